@@ -0,0 +1,99 @@
+package securebank;
+
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+public class Account {
+    private static final LongAdder CAS_RETRIES = Metrics.counter("account.casRetries");
+    static final long ABSENT = Long.MIN_VALUE; // balanceAt for a sequence before the account was opened
+    static final long KEEP_NONE = -1;          // no snapshot is open, superseded versions can go
+
+    // One balance in the account's history, stamped by DataStore with the balance journal
+    // sequence of the change that produced it. A version is installed before it is stamped,
+    // so until then it reads as PENDING, i.e. later than any open snapshot.
+    static final class Version {
+        static final long PENDING = Long.MAX_VALUE;
+        final long balance;
+        volatile Version prev; // older versions, kept only while a snapshot may ask for them
+        volatile long seq;
+
+        Version(long balance, Version prev, long seq) {
+            this.balance = balance;
+            this.prev = prev;
+            this.seq = seq;
+        }
+    }
+
+    private final String accountId; // unique id, e.g. username-1 or UUID optional
+    private final String ownerUsername;
+    private final AtomicReference<Version> head; // newest version; updated lock-free with CAS
+
+    public Account(String accountId, String ownerUsername, long balanceCents) {
+        this.accountId = accountId;
+        this.ownerUsername = ownerUsername;
+        this.head = new AtomicReference<>(new Version(balanceCents, null, 0));
+    }
+
+    public String getAccountId() { return accountId; }
+    public String getOwnerUsername() { return ownerUsername; }
+    public long getBalanceCents() { return head.get().balance; }
+    public BigDecimal getBalance() { return Money.toBigDecimal(getBalanceCents()); }
+
+    // Balance changes go through DataStore, which stamps the version each one returns with its
+    // journal sequence. deposit throws ArithmeticException instead of wrapping on overflow.
+    Version deposit(long cents, long keepFrom) {
+        if (cents <= 0) throw new IllegalArgumentException("Deposit must be positive");
+        return apply(cents, false, keepFrom);
+    }
+
+    // Null when funds are insufficient.
+    Version withdraw(long cents, long keepFrom) {
+        if (cents <= 0) throw new IllegalArgumentException("Withdrawal must be positive");
+        return apply(-cents, true, keepFrom);
+    }
+
+    // Unchecked adjustment, for replaying journaled changes and undoing a half-applied transfer.
+    Version applyDelta(long cents, long keepFrom) {
+        return apply(cents, false, keepFrom);
+    }
+
+    // keepFrom is the sequence of the oldest open snapshot, or KEEP_NONE. The version being
+    // replaced is linked behind the new one only while some snapshot is open, and once it is
+    // stamped at or before every open snapshot nothing older than it can be asked for.
+    private Version apply(long delta, boolean requireFunds, long keepFrom) {
+        while (true) {
+            Version current = head.get();
+            long next = Math.addExact(current.balance, delta);
+            if (requireFunds && next < 0) return null;
+            Version v = new Version(next, keepFrom == KEEP_NONE ? null : current, Version.PENDING);
+            if (head.compareAndSet(current, v)) {
+                if (keepFrom != KEEP_NONE && current.seq <= keepFrom) current.prev = null;
+                return v;
+            }
+            CAS_RETRIES.increment();
+        }
+    }
+
+    Version current() { return head.get(); }
+
+    // The balance after every change stamped at or before seq, or ABSENT if the account
+    // did not exist yet.
+    long balanceAt(long seq) {
+        for (Version v = head.get(); v != null; v = v.prev) {
+            if (v.seq <= seq) return v.balance;
+        }
+        return ABSENT;
+    }
+
+    // storage: accountId|ownerUsername|balance
+    public String toStorageString() {
+        return String.join("|", accountId, ownerUsername, Money.format(getBalanceCents()));
+    }
+
+    public static Account fromStorageString(String line) {
+        String[] p = line.split("\\|", -1);
+        if (p.length != 3) return null;
+        return new Account(p[0], p[1], Money.parseCents(p[2]));
+    }
+}
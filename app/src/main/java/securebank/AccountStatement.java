@@ -0,0 +1,348 @@
+package securebank;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Running totals over one account's ledger records: lifetime, per UTC day and per month.
+// DataStore folds each record in as it is appended, so a statement costs one bucket per day
+// or month asked for instead of a scan of the history. records() is how many of the
+// account's ledger records (oldest first) the totals cover, which lets a persisted statement
+// be brought up to date by folding only the records after it. Guarded by its own monitor;
+// readers get a copy from DataStore.getStatement.
+public class AccountStatement {
+    private static final long DAY_MILLIS = 86_400_000L;
+    // bucket layout
+    private static final int COUNT = 0, DEPOSITS = 1, WITHDRAWALS = 2, TRANSFERS_IN = 3, TRANSFERS_OUT = 4, SLOTS = 5;
+
+    // One bucket's sums; amounts are in cents.
+    public static final class Totals {
+        public final long count;
+        public final long deposits;
+        public final long withdrawals;
+        public final long transfersIn;
+        public final long transfersOut;
+
+        private Totals(long[] b, int at) {
+            count = b[at + COUNT];
+            deposits = b[at + DEPOSITS];
+            withdrawals = b[at + WITHDRAWALS];
+            transfersIn = b[at + TRANSFERS_IN];
+            transfersOut = b[at + TRANSFERS_OUT];
+        }
+
+        public long moneyIn() { return deposits + transfersIn; }
+        public long moneyOut() { return withdrawals + transfersOut; }
+        public long net() { return moneyIn() - moneyOut(); }
+
+        @Override
+        public String toString() {
+            return String.format("%d tx | in %s (deposits %s, transfers %s) | out %s (withdrawals %s, transfers %s) | net %s",
+                    count, Money.format(moneyIn()), Money.format(deposits), Money.format(transfersIn),
+                    Money.format(moneyOut()), Money.format(withdrawals), Money.format(transfersOut), Money.format(net()));
+        }
+    }
+
+    // Buckets sorted by key in two flat arrays: keys[i] owns sums[i*SLOTS .. i*SLOTS+SLOTS).
+    // Records mostly arrive in time order, so the newest bucket is checked first.
+    private static final class Buckets {
+        int size;
+        int[] keys = new int[4];
+        long[] sums = new long[4 * SLOTS];
+
+        // offset of key's sums, creating the bucket if needed
+        int at(int key) {
+            if (size > 0 && keys[size - 1] == key) return (size - 1) * SLOTS;
+            int i = Arrays.binarySearch(keys, 0, size, key);
+            if (i >= 0) return i * SLOTS;
+            i = -i - 1;
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                sums = Arrays.copyOf(sums, size * 2 * SLOTS);
+            }
+            System.arraycopy(keys, i, keys, i + 1, size - i);
+            System.arraycopy(sums, i * SLOTS, sums, (i + 1) * SLOTS, (size - i) * SLOTS);
+            keys[i] = key;
+            Arrays.fill(sums, i * SLOTS, (i + 1) * SLOTS, 0);
+            size++;
+            return i * SLOTS;
+        }
+
+        int find(int key) {
+            int i = Arrays.binarySearch(keys, 0, size, key);
+            return i >= 0 ? i * SLOTS : -1;
+        }
+
+        // index of the first key >= key
+        int ceiling(int key) {
+            int i = Arrays.binarySearch(keys, 0, size, key);
+            return i >= 0 ? i : -i - 1;
+        }
+
+        Buckets copy() {
+            Buckets c = new Buckets();
+            c.size = size;
+            c.keys = Arrays.copyOf(keys, Math.max(1, size));
+            c.sums = Arrays.copyOf(sums, Math.max(1, size) * SLOTS);
+            return c;
+        }
+    }
+
+    private final String accountId;
+    private long records;
+    private final long[] lifetime = new long[SLOTS];
+    private Buckets days = new Buckets();   // yyyymmdd
+    private Buckets months = new Buckets(); // yyyymm
+    private long opening; // balance before the first record; DataStore sets it, it is not stored
+    private boolean dirty; // changed since it was last written out
+    // most records land on the same day as the one before
+    private long cachedEpochDay = Long.MIN_VALUE;
+    private int cachedDayKey;
+    private int cachedMonthKey;
+
+    public AccountStatement(String accountId) {
+        this.accountId = accountId;
+    }
+
+    public String getAccountId() { return accountId; }
+
+    public synchronized long records() { return records; }
+
+    public synchronized long opening() { return opening; }
+
+    synchronized void setOpening(long cents) { opening = cents; }
+
+    // Returns true when this record made a clean statement dirty.
+    public synchronized boolean add(TransactionRecord t) {
+        int slot = slotOf(t.getType());
+        long cents = t.getAmountCents();
+        long epochDay = Math.floorDiv(t.getEpochMillis(), DAY_MILLIS);
+        if (epochDay != cachedEpochDay) {
+            LocalDate d = LocalDate.ofEpochDay(epochDay);
+            cachedDayKey = dayKey(d);
+            cachedMonthKey = monthKey(YearMonth.from(d));
+            cachedEpochDay = epochDay;
+        }
+        records++;
+        add(lifetime, 0, slot, cents);
+        int day = days.at(cachedDayKey); // may grow sums
+        int month = months.at(cachedMonthKey);
+        add(days.sums, day, slot, cents);
+        add(months.sums, month, slot, cents);
+        boolean wasClean = !dirty;
+        dirty = true;
+        return wasClean;
+    }
+
+    private static void add(long[] sums, int at, int slot, long cents) {
+        sums[at + COUNT]++;
+        if (slot != COUNT) sums[at + slot] += cents;
+    }
+
+    // What the record did to the balance: deposits and incoming transfers add, the rest of the
+    // summed types take away.
+    static long netCents(TransactionRecord t) {
+        switch (slotOf(t.getType())) {
+            case DEPOSITS: case TRANSFERS_IN: return t.getAmountCents();
+            case WITHDRAWALS: case TRANSFERS_OUT: return -t.getAmountCents();
+            default: return 0;
+        }
+    }
+
+    private static int slotOf(String type) {
+        switch (type) {
+            case "DEPOSIT": return DEPOSITS;
+            case "WITHDRAW": return WITHDRAWALS;
+            case "CREDIT": return TRANSFERS_IN;
+            case "DEBIT": return TRANSFERS_OUT;
+            default: return COUNT; // counted, not summed
+        }
+    }
+
+    // Queries
+
+    public synchronized Totals lifetime() { return new Totals(lifetime, 0); }
+
+    public synchronized Totals day(LocalDate day) { return totals(days, days.find(dayKey(day))); }
+
+    public synchronized Totals month(YearMonth month) { return totals(months, months.find(monthKey(month))); }
+
+    // Sum of the daily buckets from..to, both inclusive.
+    public synchronized Totals between(LocalDate from, LocalDate to) {
+        long[] sum = new long[SLOTS];
+        int last = dayKey(to);
+        for (int i = days.ceiling(dayKey(from)); i < days.size && days.keys[i] <= last; i++) {
+            for (int s = 0; s < SLOTS; s++) sum[s] += days.sums[i * SLOTS + s];
+        }
+        return new Totals(sum, 0);
+    }
+
+    // Sum of every day before day: whole months from the monthly buckets, then the days of
+    // day's own month.
+    public synchronized Totals before(LocalDate day) {
+        long[] sum = new long[SLOTS];
+        int months = this.months.ceiling(monthKey(YearMonth.from(day)));
+        for (int i = 0; i < months; i++) {
+            for (int s = 0; s < SLOTS; s++) sum[s] += this.months.sums[i * SLOTS + s];
+        }
+        int end = days.ceiling(dayKey(day));
+        for (int i = days.ceiling(dayKey(day.withDayOfMonth(1))); i < end; i++) {
+            for (int s = 0; s < SLOTS; s++) sum[s] += days.sums[i * SLOTS + s];
+        }
+        return new Totals(sum, 0);
+    }
+
+    // Every month with activity, oldest first.
+    public synchronized Map<YearMonth, Totals> monthly() {
+        Map<YearMonth, Totals> out = new LinkedHashMap<>();
+        for (int i = 0; i < months.size; i++) {
+            int k = months.keys[i];
+            out.put(YearMonth.of(k / 100, k % 100), new Totals(months.sums, i * SLOTS));
+        }
+        return out;
+    }
+
+    // Days with activity from..to, both inclusive, oldest first.
+    public synchronized Map<LocalDate, Totals> daily(LocalDate from, LocalDate to) {
+        Map<LocalDate, Totals> out = new LinkedHashMap<>();
+        int last = dayKey(to);
+        for (int i = days.ceiling(dayKey(from)); i < days.size && days.keys[i] <= last; i++) {
+            int k = days.keys[i];
+            out.put(LocalDate.of(k / 10000, k / 100 % 100, k % 100), new Totals(days.sums, i * SLOTS));
+        }
+        return out;
+    }
+
+    public synchronized AccountStatement copy() {
+        AccountStatement c = new AccountStatement(accountId);
+        c.records = records;
+        c.opening = opening;
+        System.arraycopy(lifetime, 0, c.lifetime, 0, SLOTS);
+        c.days = days.copy();
+        c.months = months.copy();
+        return c;
+    }
+
+    private static Totals totals(Buckets b, int at) {
+        return at >= 0 ? new Totals(b.sums, at) : new Totals(new long[SLOTS], 0);
+    }
+
+    private static int dayKey(LocalDate d) { return d.getYear() * 10000 + d.getMonthValue() * 100 + d.getDayOfMonth(); }
+
+    private static int monthKey(YearMonth m) { return m.getYear() * 100 + m.getMonthValue(); }
+
+    // Storage
+
+    // The storage line if the statement changed since the last call, else null.
+    public synchronized String takeIfDirty() {
+        if (!dirty) return null;
+        dirty = false;
+        return toStorageString();
+    }
+
+    // accountId|records|lifetime|days|months; a bucket is count,deposits,withdrawals,transfersIn,transfersOut
+    // in cents, and days/months are ';'-separated key:bucket lists.
+    public synchronized String toStorageString() {
+        StringBuilder b = new StringBuilder(64 + 48 * (days.size + months.size));
+        b.append(accountId).append('|').append(records).append('|');
+        appendBucket(b, lifetime, 0).append('|');
+        appendBuckets(b, days).append('|');
+        appendBuckets(b, months);
+        return b.toString();
+    }
+
+    private static StringBuilder appendBuckets(StringBuilder b, Buckets buckets) {
+        for (int i = 0; i < buckets.size; i++) {
+            if (i > 0) b.append(';');
+            appendBucket(b.append(buckets.keys[i]).append(':'), buckets.sums, i * SLOTS);
+        }
+        return b;
+    }
+
+    private static StringBuilder appendBucket(StringBuilder b, long[] sums, int at) {
+        for (int i = 0; i < SLOTS; i++) {
+            if (i > 0) b.append(',');
+            b.append(sums[at + i]);
+        }
+        return b;
+    }
+
+    // Null for a malformed line. The days and the months must each add up to the lifetime
+    // totals, so a line cut short by a crash is rejected rather than read as smaller sums.
+    public static AccountStatement fromStorageString(String line) {
+        int bar = line.indexOf('|');
+        if (bar <= 0) return null;
+        AccountStatement s = new AccountStatement(line.substring(0, bar));
+        Cursor c = new Cursor(line, bar + 1);
+        s.records = c.number('|');
+        for (int i = 0; i < SLOTS; i++) s.lifetime[i] = c.number(i < SLOTS - 1 ? ',' : '|');
+        c.buckets(s.days, '|');
+        c.buckets(s.months, Cursor.EOL);
+        if (c.failed || c.pos != line.length() || s.lifetime[COUNT] != s.records) return null;
+        if (!sumsMatch(s.days, s.lifetime) || !sumsMatch(s.months, s.lifetime)) return null;
+        return s;
+    }
+
+    private static boolean sumsMatch(Buckets b, long[] total) {
+        for (int slot = 0; slot < SLOTS; slot++) {
+            long sum = 0;
+            for (int i = 0; i < b.size; i++) sum += b.sums[i * SLOTS + slot];
+            if (sum != total[slot]) return false;
+        }
+        return true;
+    }
+
+    // Hand-rolled reader for the storage line; split() on this many fields dominates a startup.
+    private static final class Cursor {
+        static final char EOL = '\n'; // stands for the end of the line, which holds no newline
+        final String s;
+        int pos;
+        boolean failed;
+
+        Cursor(String s, int pos) {
+            this.s = s;
+            this.pos = pos;
+        }
+
+        // A decimal long followed by end, which is consumed.
+        long number(char end) {
+            int start = pos;
+            boolean negative = pos < s.length() && s.charAt(pos) == '-';
+            if (negative) pos++;
+            long v = 0;
+            while (pos < s.length() && s.charAt(pos) >= '0' && s.charAt(pos) <= '9') {
+                v = v * 10 + (s.charAt(pos++) - '0');
+            }
+            if (pos == start + (negative ? 1 : 0) || pos - start > 19) failed = true;
+            if (!at(end)) failed = true;
+            else if (pos < s.length()) pos++;
+            return negative ? -v : v;
+        }
+
+        boolean at(char c) {
+            return pos < s.length() ? s.charAt(pos) == c : c == EOL;
+        }
+
+        void buckets(Buckets into, char end) {
+            if (at(end)) { // no buckets
+                if (pos < s.length()) pos++;
+                return;
+            }
+            while (!failed) {
+                int key = (int) number(':');
+                int at = into.at(key);
+                for (int i = 0; i < SLOTS - 1; i++) into.sums[at + i] = number(',');
+                int before = pos;
+                into.sums[at + SLOTS - 1] = number(';');
+                if (!failed) continue;
+                // the last bucket ends with the section terminator instead of ';'
+                pos = before;
+                failed = false;
+                into.sums[at + SLOTS - 1] = number(end);
+                return;
+            }
+        }
+    }
+}
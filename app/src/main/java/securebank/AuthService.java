@@ -0,0 +1,150 @@
+package securebank;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Logins are throttled before any hashing: each username has a token bucket of attempts
+// (-Dbank.auth.userAttemptsPerMinute, -Dbank.auth.userBurst; reset by a successful login;
+// existing users' buckets are never evicted from the -Dbank.auth.maxTrackedUsers LRU) and
+// every KDF run, logins and registrations alike, takes a token from one global bucket
+// (-Dbank.auth.kdfPerSecond, -Dbank.auth.kdfBurst), so a guessing burst costs a bounded share
+// of the CPU however fast it arrives. Sessions expire after -Dbank.auth.sessionIdleMinutes
+// without use and -Dbank.auth.sessionMaxMinutes after login.
+public class AuthService {
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final int TOKEN_BYTES = 32;
+    private static final int SWEEP_EVERY = 256; // session opens between sweeps of expired tokens
+    private static final LongAdder THROTTLED = Metrics.counter("auth.throttled");
+
+    private static final class Session {
+        final String username;
+        final long hardExpiry;
+        volatile long idleExpiry;
+
+        Session(String username, long hardExpiry, long idleExpiry) {
+            this.username = username;
+            this.hardExpiry = hardExpiry;
+            this.idleExpiry = idleExpiry;
+        }
+    }
+
+    private final BankStore ds;
+    private final PasswordHasher hasher;
+    // session token -> session; lets API callers log in once instead of running the KDF per request
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    private final AtomicInteger opensSinceSweep = new AtomicInteger();
+    private final long sessionIdleMillis = TimeUnit.MINUTES.toMillis(Long.getLong("bank.auth.sessionIdleMinutes", 15));
+    private final long sessionMaxMillis = TimeUnit.MINUTES.toMillis(Long.getLong("bank.auth.sessionMaxMinutes", 8 * 60));
+    private final RateLimiter userAttempts = new RateLimiter(
+            Integer.getInteger("bank.auth.userAttemptsPerMinute", 5) / 60.0,
+            Integer.getInteger("bank.auth.userBurst", 5),
+            Integer.getInteger("bank.auth.maxTrackedUsers", 100_000));
+    private final RateLimiter.Bucket kdfRuns;
+
+    public AuthService(BankStore ds) {
+        this(ds, new PasswordHasher());
+    }
+
+    public AuthService(BankStore ds, PasswordHasher hasher) {
+        this.ds = ds;
+        this.hasher = hasher;
+        // a 65,536-iteration PBKDF2 takes tens of ms, so 5 per core per second keeps logins to a fraction of each core
+        int cores = Runtime.getRuntime().availableProcessors();
+        this.kdfRuns = new RateLimiter.Bucket(
+                Double.parseDouble(System.getProperty("bank.auth.kdfPerSecond", Integer.toString(5 * cores))),
+                Integer.getInteger("bank.auth.kdfBurst", 10 * cores));
+    }
+
+    // Hashing runs on the bounded PasswordHasher pool; when it is saturated these methods
+    // throw RejectedExecutionException instead of queueing behind the KDF, and when a rate
+    // limit is hit they throw RateLimitedException (a RejectedExecutionException) before it.
+    // register throws IllegalArgumentException for a username that cannot be stored and returns
+    // false when the password is too short or the username is taken, also by a racing register.
+    public boolean register(String username, char[] password) throws Exception {
+        username = Securityutil.sanitizeUsername(username);
+        if (!Securityutil.isValidUsername(username)) {
+            throw new IllegalArgumentException("username must be 1 to " + Securityutil.MAX_USERNAME_LENGTH
+                    + " characters without control characters, '|' or '%'");
+        }
+        if (password == null || password.length < 6) {
+            return false;
+        }
+        if (ds.usernameExists(username)) return false;
+        throttle(kdfRuns.tryAcquire(System.nanoTime()), "Too many sign-ins in progress");
+        String salt = Securityutil.generateSaltBase64();
+        String hash = hasher.hash(password, salt, Securityutil.ALGORITHM, Securityutil.ITERATIONS);
+        User u = new User(username, hash, salt, Securityutil.ALGORITHM, Securityutil.ITERATIONS);
+        return ds.addUser(u).join();
+    }
+
+    public boolean login(String username, char[] password) throws Exception {
+        username = Securityutil.sanitizeUsername(username);
+        throttle(userAttempts.tryAcquire(username), "Too many login attempts for this user");
+        User u = ds.getUser(username);
+        if (u == null) return false;
+        userAttempts.hold(username); // junk usernames cycling through the LRU cannot evict a real user's bucket
+        throttle(kdfRuns.tryAcquire(System.nanoTime()), "Too many sign-ins in progress");
+        if (!hasher.verify(u, password)) return false;
+        userAttempts.reset(username);
+        if (u.needsRehash()) rehash(u, password);
+        return true;
+    }
+
+    private static void throttle(long waitNanos, String message) {
+        if (waitNanos == 0) return;
+        THROTTLED.increment();
+        throw new RateLimitedException(message, Math.max(1, TimeUnit.NANOSECONDS.toMillis(waitNanos)));
+    }
+
+    // Upgrades a stored hash to the current KDF settings while the plain password is at hand.
+    private void rehash(User u, char[] password) throws Exception {
+        if (kdfRuns.tryAcquire(System.nanoTime()) != 0) return; // try again on a later login
+        String salt = Securityutil.generateSaltBase64();
+        String hash;
+        try {
+            hash = hasher.hash(password, salt, Securityutil.ALGORITHM, Securityutil.ITERATIONS);
+        } catch (RejectedExecutionException busy) {
+            return; // try again on a later login
+        }
+        ds.updateUser(new User(u.getUsername(), hash, salt, Securityutil.ALGORITHM, Securityutil.ITERATIONS));
+    }
+
+    // Runs a full login and returns a session token, or null when the credentials are wrong.
+    public String openSession(String username, char[] password) throws Exception {
+        if (!login(username, password)) return null;
+        byte[] b = new byte[TOKEN_BYTES];
+        RANDOM.nextBytes(b);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(b);
+        long now = System.currentTimeMillis();
+        sessions.put(token, new Session(Securityutil.sanitizeUsername(username), now + sessionMaxMillis, now + sessionIdleMillis));
+        if (opensSinceSweep.incrementAndGet() >= SWEEP_EVERY) {
+            opensSinceSweep.set(0);
+            sessions.values().removeIf(s -> s.idleExpiry <= now || s.hardExpiry <= now);
+        }
+        return token;
+    }
+
+    // Returns the user a token was issued to, or null for an unknown or expired token.
+    // One map lookup; a valid token's idle timer restarts.
+    public String sessionUser(String token) {
+        Session s = token == null ? null : sessions.get(token);
+        if (s == null) return null;
+        long now = System.currentTimeMillis();
+        if (s.idleExpiry <= now || s.hardExpiry <= now) {
+            sessions.remove(token, s);
+            return null;
+        }
+        s.idleExpiry = Math.min(s.hardExpiry, now + sessionIdleMillis);
+        return s.username;
+    }
+
+    public void closeSession(String token) {
+        if (token != null) sessions.remove(token);
+    }
+}
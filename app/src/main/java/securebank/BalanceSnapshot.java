@@ -0,0 +1,84 @@
+package securebank;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+import java.util.function.ObjLongConsumer;
+
+// Every account's balance as of one balance journal sequence, for exports and reports that
+// must add up. Opening it pauses the store's writers only while the sequence is read (the
+// write side of the snapshot lock, no work under it); reads then walk each account's version
+// chain back to the newest version stamped at or before the sequence while writers carry on.
+// Writers keep superseded versions only while a snapshot that may need them is open, so a
+// snapshot should be closed as soon as it has been read (try-with-resources).
+//
+// A sharded store is cut on every shard at once (all write locks held together, in shard
+// order). A cross-shard transfer holds both of its shards' read locks across its two legs, so
+// the cut sees it whole or not at all; only a crash can still separate the legs (see
+// ShardedDataStore).
+public final class BalanceSnapshot implements AutoCloseable {
+    private final DataStore[] stores;
+    private final long[] seqs;
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    private BalanceSnapshot(DataStore[] stores, long[] seqs) {
+        this.stores = stores;
+        this.seqs = seqs;
+    }
+
+    static BalanceSnapshot open(DataStore[] stores) {
+        long[] seqs = new long[stores.length];
+        int locked = 0;
+        try {
+            for (DataStore s : stores) {
+                s.snapshotWriteLock().lock();
+                locked++;
+            }
+            for (int i = 0; i < stores.length; i++) seqs[i] = stores[i].registerSnapshot();
+        } finally {
+            for (int i = locked - 1; i >= 0; i--) stores[i].snapshotWriteLock().unlock();
+        }
+        return new BalanceSnapshot(stores, seqs);
+    }
+
+    // The journal sequence of the cut, one per shard.
+    public long[] getSequences() { return seqs.clone(); }
+
+    // Null when the account did not exist at the cut.
+    public Long getBalanceCents(String accountId) {
+        checkOpen();
+        for (int i = 0; i < stores.length; i++) {
+            Account a = stores[i].getAccount(accountId);
+            if (a == null) continue;
+            long b = a.balanceAt(seqs[i]);
+            return b == Account.ABSENT ? null : b;
+        }
+        return null;
+    }
+
+    // Every account that existed at the cut with its balance then, in no particular order.
+    public void forEach(ObjLongConsumer<Account> action) {
+        checkOpen();
+        for (int i = 0; i < stores.length; i++) {
+            for (Account a : stores[i].getAccounts()) {
+                long b = a.balanceAt(seqs[i]);
+                if (b != Account.ABSENT) action.accept(a, b);
+            }
+        }
+    }
+
+    public long getTotalCents() {
+        long[] total = new long[1];
+        forEach((a, b) -> total[0] = Math.addExact(total[0], b));
+        return total[0];
+    }
+
+    private void checkOpen() {
+        if (closed.get()) throw new IllegalStateException("snapshot is closed");
+    }
+
+    @Override
+    public void close() {
+        if (!closed.compareAndSet(false, true)) return;
+        for (int i = 0; i < stores.length; i++) stores[i].releaseSnapshot(seqs[i]);
+    }
+}
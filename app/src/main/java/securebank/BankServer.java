@@ -0,0 +1,381 @@
+package securebank;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+// HTTP/JSON front end over the BankStore and AuthService on the JDK's built-in server.
+//
+//   POST /register                          {"username","password"}
+//   POST /login                             {"username","password"}  -> {"token"}
+//   POST /logout
+//   GET  /accounts                          POST /accounts            (creates one)
+//   POST /accounts/{id}/deposit             {"amount"}
+//   POST /accounts/{id}/withdraw            {"amount"}
+//   POST /accounts/{id}/transfer            {"to","amount"}
+//   GET  /accounts/{id}/transactions        ?offset=0&limit=20  [&from=ISO instant&to=ISO instant]
+//   GET  /accounts/{id}/balance             ?asOf=2024-03-01T00:00:00Z  (default: now)
+//   GET  /metrics                           (text, loopback clients only)
+//
+// Everything but register, login and metrics needs "Authorization: Bearer <token>"; tokens expire
+// (see AuthService) and an expired one gets 401. Register and login calls over their rate limit
+// get 429 with Retry-After before any password hashing. Deposit and withdraw accept an
+// "Idempotency-Key" header, scoped to the account: a retry with the same key is answered with
+// the first request's outcome instead of moving money again, and the key reused for another
+// operation or amount gets 422. Each request gets a virtual thread where the runtime has
+// them (Java 21+), else a pooled platform thread.
+public class BankServer {
+    private static final int MAX_BODY_BYTES = 16 * 1024;
+    private static final int DEFAULT_PAGE = 20;
+    private static final int MAX_PAGE = 500;
+    private static final Metrics.Histogram REQUEST = Metrics.timer("http.request");
+
+    private final BankStore ds;
+    private final AuthService auth;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    public BankServer(BankStore ds, AuthService auth, int port) throws IOException {
+        this.ds = ds;
+        this.auth = auth;
+        this.executor = requestExecutor();
+        this.server = HttpServer.create(new InetSocketAddress(port), 1024);
+        server.createContext("/", this::handle);
+        server.createContext("/metrics", this::metrics);
+        server.setExecutor(executor);
+    }
+
+    public void start() { server.start(); }
+
+    public int getPort() { return server.getAddress().getPort(); }
+
+    public void stop() {
+        server.stop(1);
+        executor.shutdown();
+    }
+
+    // Executors.newVirtualThreadPerTaskExecutor() when present; looked up reflectively so the
+    // code still builds and runs on Java 17.
+    static ExecutorService requestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(r, "http-request");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    private static final class Reply {
+        final int status;
+        final String body;
+
+        Reply(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+
+    private static final class HttpError extends Exception {
+        private static final long serialVersionUID = 1L;
+        final int status;
+
+        HttpError(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    private void metrics(HttpExchange ex) throws IOException {
+        boolean local = ex.getRemoteAddress().getAddress().isLoopbackAddress();
+        byte[] out = (local ? Metrics.dump() : "forbidden\n").getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        ex.sendResponseHeaders(local ? 200 : 403, out.length);
+        try (OutputStream os = ex.getResponseBody()) {
+            os.write(out);
+        }
+    }
+
+    private void handle(HttpExchange ex) throws IOException {
+        long start = System.nanoTime();
+        int status;
+        String body;
+        try {
+            Reply r = route(ex);
+            status = r.status;
+            body = r.body;
+        } catch (HttpError e) {
+            status = e.status;
+            body = error(e.getMessage());
+        } catch (RateLimitedException limited) {
+            status = 429;
+            body = error(limited.getMessage());
+            ex.getResponseHeaders().set("Retry-After", Long.toString((limited.getRetryAfterMillis() + 999) / 1000));
+        } catch (RejectedExecutionException busy) {
+            status = 503;
+            body = error("server busy, try again shortly");
+        } catch (IdempotencyConflictException reused) {
+            status = 422;
+            body = error(reused.getMessage());
+        } catch (NumberFormatException | ArithmeticException bad) {
+            status = 400;
+            body = error("invalid amount");
+        } catch (IllegalArgumentException bad) {
+            status = 400;
+            body = error(bad.getMessage());
+        } catch (Exception e) {
+            status = 500;
+            body = error("internal error");
+            e.printStackTrace();
+        }
+        byte[] out = body.getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", "application/json");
+        ex.sendResponseHeaders(status, out.length);
+        try (OutputStream os = ex.getResponseBody()) {
+            os.write(out);
+        }
+        REQUEST.recordSince(start);
+        Metrics.counter("http.status." + status / 100 + "xx").increment();
+    }
+
+    private Reply route(HttpExchange ex) throws Exception {
+        String method = ex.getRequestMethod();
+        String[] path = ex.getRequestURI().getPath().replaceAll("^/+|/+$", "").split("/");
+        if (path.length == 1 && path[0].equals("register")) {
+            requirePost(method);
+            return new Reply(201, register(ex));
+        }
+        if (path.length == 1 && path[0].equals("login")) {
+            requirePost(method);
+            return new Reply(200, login(ex));
+        }
+        String token = bearerToken(ex);
+        String username = auth.sessionUser(token);
+        if (username == null) throw new HttpError(401, "login required");
+        if (path.length == 1 && path[0].equals("logout")) {
+            requirePost(method);
+            auth.closeSession(token);
+            return new Reply(200, "{}");
+        }
+        if (path[0].equals("accounts")) {
+            if (path.length == 1) {
+                if (method.equals("GET")) return new Reply(200, accounts(username));
+                requirePost(method);
+                return new Reply(201, createAccount(username));
+            }
+            Account a = ds.getAccount(path[1]);
+            if (a == null || !a.getOwnerUsername().equals(username)) throw new HttpError(404, "no such account");
+            if (path.length == 3) {
+                switch (path[2]) {
+                    case "deposit": requirePost(method); return new Reply(200, deposit(a, readBody(ex), idempotencyKey(ex)));
+                    case "withdraw": requirePost(method); return new Reply(200, withdraw(a, readBody(ex), idempotencyKey(ex)));
+                    case "transfer": requirePost(method); return new Reply(200, transfer(a, readBody(ex)));
+                    case "transactions": return new Reply(200, transactions(a, ex.getRequestURI().getRawQuery()));
+                    case "balance": return new Reply(200, balance(a, ex.getRequestURI().getRawQuery()));
+                    default: break;
+                }
+            }
+        }
+        throw new HttpError(404, "not found");
+    }
+
+    private String register(HttpExchange ex) throws Exception {
+        Map<String, String> req = readBody(ex);
+        char[] password = required(req, "password").toCharArray();
+        try {
+            if (!auth.register(req.get("username"), password)) {
+                throw new HttpError(409, "registration failed (username may exist or password too short)");
+            }
+        } finally {
+            Arrays.fill(password, '\0');
+        }
+        return "{}";
+    }
+
+    private String login(HttpExchange ex) throws Exception {
+        Map<String, String> req = readBody(ex);
+        char[] password = required(req, "password").toCharArray();
+        String token;
+        try {
+            token = auth.openSession(req.get("username"), password);
+        } finally {
+            Arrays.fill(password, '\0');
+        }
+        if (token == null) throw new HttpError(401, "login failed");
+        return "{\"token\":" + Json.quote(token) + "}";
+    }
+
+    private String accounts(String username) {
+        StringBuilder b = new StringBuilder("{\"accounts\":[");
+        List<Account> list = ds.getAccountsForUser(username);
+        for (int i = 0; i < list.size(); i++) {
+            if (i > 0) b.append(',');
+            b.append(account(list.get(i)));
+        }
+        return b.append("]}").toString();
+    }
+
+    private String createAccount(String username) {
+        String accountId = username + "-" + UUID.randomUUID().toString().substring(0,8);
+        Account a = new Account(accountId, username, 0L);
+        ds.addAccount(a).join();
+        return account(a);
+    }
+
+    private String deposit(Account a, Map<String, String> req, String idempotencyKey) {
+        long cents = amount(req);
+        if (idempotencyKey != null) return receipt(ds.deposit(a, cents, idempotencyKey).join(), a);
+        CompletableFuture<Void> balance = ds.deposit(a, cents);
+        String txId = TxIdGenerator.next();
+        TransactionRecord tr = TransactionRecord.create(txId, a.getAccountId(), "DEPOSIT", cents);
+        CompletableFuture.allOf(balance, ds.addTransaction(tr)).join();
+        return receipt(txId, a);
+    }
+
+    private String withdraw(Account a, Map<String, String> req, String idempotencyKey) throws HttpError {
+        long cents = amount(req);
+        if (idempotencyKey != null) {
+            String txId = ds.withdraw(a, cents, idempotencyKey).join();
+            if (txId == null) throw new HttpError(409, "insufficient funds");
+            return receipt(txId, a);
+        }
+        if (!ds.withdraw(a, cents).join()) throw new HttpError(409, "insufficient funds");
+        String txId = TxIdGenerator.next();
+        ds.addTransaction(TransactionRecord.create(txId, a.getAccountId(), "WITHDRAW", cents)).join();
+        return receipt(txId, a);
+    }
+
+    private String transfer(Account from, Map<String, String> req) throws HttpError {
+        Account to = ds.getAccount(required(req, "to"));
+        if (to == null) throw new HttpError(404, "no such destination account");
+        if (to.getAccountId().equals(from.getAccountId())) throw new HttpError(400, "choose a different destination account");
+        long cents = amount(req);
+        String txId = TxIdGenerator.next();
+        if (!ds.transfer(from, to, cents, txId).join()) throw new HttpError(409, "insufficient funds");
+        return receipt(txId, from);
+    }
+
+    private String transactions(Account a, String query) {
+        int offset = queryInt(query, "offset", 0);
+        int limit = Math.min(queryInt(query, "limit", DEFAULT_PAGE), MAX_PAGE);
+        if (offset < 0 || limit < 0) throw new IllegalArgumentException("offset and limit must be >= 0");
+        Long from = instantParam(query, "from"), to = instantParam(query, "to");
+        StringBuilder b = new StringBuilder("{\"total\":").append(ds.countTransactionsForAccount(a.getAccountId()))
+                .append(",\"transactions\":[");
+        List<TransactionRecord> page = from == null && to == null
+                ? ds.getTransactionsForAccount(a.getAccountId(), offset, limit)
+                : ds.getTransactionsBetween(a.getAccountId(), from == null ? Long.MIN_VALUE : from, to == null ? Long.MAX_VALUE : to, offset, limit);
+        for (int i = 0; i < page.size(); i++) {
+            TransactionRecord t = page.get(i);
+            if (i > 0) b.append(',');
+            b.append("{\"txId\":").append(Json.quote(t.getTxId()))
+                    .append(",\"type\":").append(Json.quote(t.getType()))
+                    .append(",\"amount\":").append(Money.format(t.getAmountCents()))
+                    .append(",\"timestamp\":").append(Json.quote(t.getTimestamp())).append('}');
+        }
+        return b.append("]}").toString();
+    }
+
+    // The current balance, or the balance at asOf rebuilt from the ledger.
+    private String balance(Account a, String query) {
+        Long millis = instantParam(query, "asOf");
+        if (millis == null) return account(a);
+        return "{\"accountId\":" + Json.quote(a.getAccountId()) + ",\"asOf\":" + Json.quote(queryParam(query, "asOf"))
+                + ",\"balance\":" + Money.format(ds.getBalanceAsOf(a.getAccountId(), millis)) + "}";
+    }
+
+    private static String account(Account a) {
+        return "{\"accountId\":" + Json.quote(a.getAccountId()) + ",\"balance\":" + Money.format(a.getBalanceCents()) + "}";
+    }
+
+    private static String receipt(String txId, Account a) {
+        return "{\"txId\":" + Json.quote(txId) + ",\"balance\":" + Money.format(a.getBalanceCents()) + "}";
+    }
+
+    private static String error(String message) {
+        return "{\"error\":" + Json.quote(message) + "}";
+    }
+
+    // Same rules as the console: at most two decimals and strictly positive.
+    private static long amount(Map<String, String> req) {
+        BigDecimal amt = new BigDecimal(required(req, "amount")).setScale(2);
+        if (amt.compareTo(BigDecimal.ZERO) <= 0) throw new IllegalArgumentException("amount must be > 0");
+        return Money.toCents(amt);
+    }
+
+    private static String required(Map<String, String> req, String field) {
+        String v = req.get(field);
+        if (v == null) throw new IllegalArgumentException("missing field " + field);
+        return v;
+    }
+
+    private static void requirePost(String method) throws HttpError {
+        if (!method.equals("POST")) throw new HttpError(405, "method not allowed");
+    }
+
+    private static String idempotencyKey(HttpExchange ex) {
+        return ex.getRequestHeaders().getFirst("Idempotency-Key");
+    }
+
+    private static String bearerToken(HttpExchange ex) {
+        String h = ex.getRequestHeaders().getFirst("Authorization");
+        return h != null && h.startsWith("Bearer ") ? h.substring("Bearer ".length()).trim() : null;
+    }
+
+    private static Map<String, String> readBody(HttpExchange ex) throws IOException, HttpError {
+        try (InputStream in = ex.getRequestBody()) {
+            byte[] b = in.readNBytes(MAX_BODY_BYTES + 1);
+            if (b.length > MAX_BODY_BYTES) throw new HttpError(413, "request body too large");
+            return Json.parseObject(b.length == 0 ? "{}" : new String(b, StandardCharsets.UTF_8));
+        }
+    }
+
+    private static int queryInt(String query, String name, int defaultValue) {
+        String v = queryParam(query, name);
+        if (v == null) return defaultValue;
+        try {
+            return Integer.parseInt(v);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("invalid " + name);
+        }
+    }
+
+    // Epoch millis of an ISO-8601 instant parameter, or null when it is absent.
+    private static Long instantParam(String query, String name) {
+        String v = queryParam(query, name);
+        if (v == null) return null;
+        try {
+            return Instant.parse(v).toEpochMilli();
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("invalid " + name + ", expected an ISO-8601 instant");
+        }
+    }
+
+    private static String queryParam(String query, String name) {
+        if (query == null) return null;
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0 && pair.substring(0, eq).equals(name)) return URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+        }
+        return null;
+    }
+}
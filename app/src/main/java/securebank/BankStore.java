@@ -0,0 +1,68 @@
+package securebank;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+// What the console, the HTTP server, AuthService and the batch ingestor need from storage.
+// DataStore is one directory; ShardedDataStore routes the same calls over several of them.
+// Futures complete once the change is durable under the store's FsyncPolicy.
+public interface BankStore {
+
+    // Opens data/ as it is laid out on disk: sharded when it holds a shard marker (see
+    // Resharder), or a fresh directory with -Dbank.shards=N > 1; a single DataStore otherwise.
+    static BankStore open(String baseDir) throws IOException {
+        Path dir = Paths.get(baseDir);
+        int shards = Integer.getInteger("bank.shards", 1);
+        if (ShardedDataStore.isPresent(dir)) return new ShardedDataStore(dir);
+        if (shards > 1) {
+            if (Files.exists(dir.resolve("users.txt"))) {
+                throw new IOException(dir + " holds an unsharded store; split it with Resharder first");
+            }
+            return new ShardedDataStore(dir, shards);
+        }
+        return new DataStore(baseDir);
+    }
+
+    // Users
+    boolean usernameExists(String username);
+    CompletableFuture<Boolean> addUser(User user); // false when the username is taken
+    User getUser(String username);
+    CompletableFuture<Void> updateUser(User user);
+    Collection<User> getUsers();
+
+    // Accounts; amounts are in cents
+    CompletableFuture<Void> addAccount(Account account);
+    Account getAccount(String accountId);
+    List<Account> getAccountsForUser(String username);
+    Collection<Account> getAccounts();
+    CompletableFuture<Void> deposit(Account account, long cents);
+    CompletableFuture<Boolean> withdraw(Account account, long cents);
+    CompletableFuture<String> deposit(Account account, long cents, String idempotencyKey);
+    CompletableFuture<String> withdraw(Account account, long cents, String idempotencyKey);
+    CompletableFuture<Boolean> transfer(Account from, Account to, long cents, String txId);
+    CompletableFuture<Void> applyBatch(List<TransactionRecord> records, String[] rejections); // null where applied
+
+    // Transactions
+    CompletableFuture<Void> addTransaction(TransactionRecord tr);
+    List<TransactionRecord> getTransactionsForAccount(String accountId);
+    List<TransactionRecord> getTransactionsForAccount(String accountId, int offset, int limit);
+    List<TransactionRecord> getTransactionsBetween(String accountId, long fromMillis, long toMillis, int offset, int limit);
+    Stream<TransactionRecord> streamTransactionsForAccount(String accountId);
+    int countTransactionsForAccount(String accountId);
+    AccountStatement getStatement(String accountId);
+
+    // Point in time
+    BalanceSnapshot snapshot();
+    long getBalanceAsOf(String accountId, long epochMillis);
+
+    // Lifecycle
+    String getLoadReport();
+    void persistAccounts() throws IOException;
+    void close() throws IOException;
+}
@@ -0,0 +1,324 @@
+package securebank;
+
+import java.io.Console;
+import java.math.BigDecimal;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.Scanner;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
+public class BankingApp {
+    private static final int HISTORY_PAGE_SIZE = 20;
+    private static BankStore ds;
+    private static AuthService auth;
+
+    public static void main(String[] args) {
+        try {
+            String baseDir = "data"; // will create data/ directory and files
+            ds = BankStore.open(baseDir);
+            System.out.println(ds.getLoadReport());
+            long dumpSeconds = Long.getLong("bank.metrics.dumpSeconds", 0);
+            if (dumpSeconds > 0) Metrics.startPeriodicDump(Paths.get(baseDir, "metrics.log"), dumpSeconds);
+            if (args.length == 2 && args[0].equals("--ingest")) {
+                // non-interactive: java -jar securebank.jar --ingest instructions.csv
+                try {
+                    System.out.println(new BatchIngestor(ds).ingest(Paths.get(args[1])));
+                } finally {
+                    ds.close();
+                }
+                return;
+            }
+            auth = new AuthService(ds);
+            if (args.length >= 1 && args[0].equals("--serve")) {
+                // java -jar securebank.jar --serve [port]
+                BankServer server = new BankServer(ds, auth, args.length > 1 ? Integer.parseInt(args[1]) : 8080);
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                    server.stop();
+                    try {
+                        ds.close();
+                    } catch (Exception e) {
+                        System.err.println("Close failed: " + e.getMessage());
+                    }
+                }));
+                server.start();
+                System.out.println("Serving on port " + server.getPort());
+                return;
+            }
+            runConsole();
+        } catch (Exception e) {
+            System.err.println("Fatal error: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    private static void runConsole() throws Exception {
+        Scanner scanner = new Scanner(System.in);
+        System.out.println("=== Secure Banking Application ===");
+        while (true) {
+            System.out.println("\n1) Login\n2) Register\n3) Exit\n4) Metrics");
+            System.out.print("Choice: ");
+            String choice = scanner.nextLine().trim();
+            if (choice.equals("1")) {
+                performLogin(scanner);
+            } else if (choice.equals("2")) {
+                performRegister(scanner);
+            } else if (choice.equals("3")) {
+                System.out.println("Goodbye.");
+                ds.close();
+                break;
+            } else if (choice.equals("4")) {
+                System.out.print(Metrics.dump());
+            } else {
+                System.out.println("Invalid option.");
+            }
+        }
+        scanner.close();
+    }
+
+    private static void performRegister(Scanner scanner) throws Exception {
+        System.out.println("--- Register ---");
+        System.out.print("Username: ");
+        String username = scanner.nextLine().trim();
+        char[] password = readPassword("Password (min 6 chars): ");
+        if (password == null) {
+            System.out.println("No console available; reading password in plain (not recommended).");
+            System.out.print("Password: ");
+            password = scanner.nextLine().toCharArray();
+        }
+        boolean ok;
+        try {
+            ok = auth.register(username, password);
+        } catch (IllegalArgumentException badName) {
+            System.out.println("Registration failed: " + badName.getMessage() + ".");
+            return;
+        } catch (RateLimitedException limited) {
+            System.out.printf("Too many attempts, please try again in %d s.%n", (limited.getRetryAfterMillis() + 999) / 1000);
+            return;
+        } catch (RejectedExecutionException busy) {
+            System.out.println("Server busy, please try again shortly.");
+            return;
+        } finally {
+            zeroOut(password);
+        }
+        if (ok) System.out.println("Registration successful. Please login.");
+        else System.out.println("Registration failed (username may exist or password too short).");
+    }
+
+    private static void performLogin(Scanner scanner) throws Exception {
+        System.out.println("--- Login ---");
+        System.out.print("Username: ");
+        String username = scanner.nextLine().trim();
+        char[] password = readPassword("Password: ");
+        if (password == null) {
+            System.out.print("Password: ");
+            password = scanner.nextLine().toCharArray();
+        }
+        boolean ok;
+        try {
+            ok = auth.login(username, password);
+        } catch (RateLimitedException limited) {
+            System.out.printf("Too many attempts, please try again in %d s.%n", (limited.getRetryAfterMillis() + 999) / 1000);
+            return;
+        } catch (RejectedExecutionException busy) {
+            System.out.println("Server busy, please try again shortly.");
+            return;
+        } finally {
+            zeroOut(password);
+        }
+        if (ok) {
+            System.out.println("Login successful.");
+            userMenu(scanner, username);
+        } else {
+            System.out.println("Login failed. Check username/password.");
+        }
+    }
+
+    private static void userMenu(Scanner scanner, String username) throws Exception {
+        while (true) {
+            System.out.println("\n--- Main Menu (" + username + ") ---");
+            System.out.println("1) Create New Account");
+            System.out.println("2) View Accounts");
+            System.out.println("3) Deposit");
+            System.out.println("4) Withdraw");
+            System.out.println("5) Transfer");
+            System.out.println("6) Transaction History");
+            System.out.println("7) Statement");
+            System.out.println("8) Logout");
+            System.out.print("Choice: ");
+            String c = scanner.nextLine().trim();
+            switch (c) {
+                case "1": createAccount(scanner, username); break;
+                case "2": viewAccounts(username); break;
+                case "3": deposit(scanner, username); break;
+                case "4": withdraw(scanner, username); break;
+                case "5": transfer(scanner, username); break;
+                case "6": txHistory(scanner, username); break;
+                case "7": statement(scanner, username); break;
+                case "8": return;
+                default: System.out.println("Invalid option."); break;
+            }
+        }
+    }
+
+    private static void createAccount(Scanner scanner, String username) throws Exception {
+        String accountId = username + "-" + UUID.randomUUID().toString().substring(0,8);
+        Account a = new Account(accountId, username, 0L);
+        ds.addAccount(a).join();
+        System.out.println("Account created: " + accountId);
+    }
+
+    private static void viewAccounts(String username) {
+        List<Account> list = ds.getAccountsForUser(username);
+        if (list.isEmpty()) System.out.println("No accounts yet.");
+        else {
+            System.out.println("Your accounts:");
+            for (Account a : list) {
+                System.out.printf(" - %s : %s%n", a.getAccountId(), a.getBalance().toPlainString());
+            }
+        }
+    }
+
+    private static Account promptSelectAccount(Scanner scanner, String username) {
+        List<Account> list = ds.getAccountsForUser(username);
+        if (list.isEmpty()) {
+            System.out.println("No accounts found. Create one first.");
+            return null;
+        }
+        System.out.println("Select account by number:");
+        for (int i = 0; i < list.size(); i++) {
+            Account a = list.get(i);
+            System.out.printf("%d) %s : %s%n", i+1, a.getAccountId(), a.getBalance().toPlainString());
+        }
+        System.out.print("Choice: ");
+        String s = scanner.nextLine().trim();
+        try {
+            int idx = Integer.parseInt(s) - 1;
+            if (idx < 0 || idx >= list.size()) { System.out.println("Invalid selection."); return null; }
+            return list.get(idx);
+        } catch (NumberFormatException ex) {
+            System.out.println("Invalid input.");
+            return null;
+        }
+    }
+
+    private static void deposit(Scanner scanner, String username) throws Exception {
+        Account a = promptSelectAccount(scanner, username);
+        if (a == null) return;
+        System.out.print("Amount to deposit: ");
+        String s = scanner.nextLine().trim();
+        try {
+            BigDecimal amt = new BigDecimal(s).setScale(2);
+            if (amt.compareTo(BigDecimal.ZERO) <= 0) { System.out.println("Amount must be > 0."); return; }
+            long cents = Money.toCents(amt);
+            CompletableFuture<Void> balance = ds.deposit(a, cents);
+            String txId = TxIdGenerator.next();
+            TransactionRecord tr = TransactionRecord.create(txId, a.getAccountId(), "DEPOSIT", cents);
+            CompletableFuture.allOf(balance, ds.addTransaction(tr)).join();
+            System.out.println("Deposit complete. New balance: " + a.getBalance().toPlainString());
+        } catch (NumberFormatException | ArithmeticException ex) {
+            System.out.println("Invalid amount.");
+        }
+    }
+
+    private static void withdraw(Scanner scanner, String username) throws Exception {
+        Account a = promptSelectAccount(scanner, username);
+        if (a == null) return;
+        System.out.print("Amount to withdraw: ");
+        String s = scanner.nextLine().trim();
+        try {
+            BigDecimal amt = new BigDecimal(s).setScale(2);
+            if (amt.compareTo(BigDecimal.ZERO) <= 0) { System.out.println("Amount must be > 0."); return; }
+            long cents = Money.toCents(amt);
+            boolean ok = ds.withdraw(a, cents).join();
+            if (!ok) { System.out.println("Insufficient funds."); return; }
+            String txId = TxIdGenerator.next();
+            TransactionRecord tr = TransactionRecord.create(txId, a.getAccountId(), "WITHDRAW", cents);
+            ds.addTransaction(tr).join();
+            System.out.println("Withdrawal complete. New balance: " + a.getBalance().toPlainString());
+        } catch (NumberFormatException | ArithmeticException ex) {
+            System.out.println("Invalid amount.");
+        }
+    }
+
+    private static void transfer(Scanner scanner, String username) throws Exception {
+        Account from = promptSelectAccount(scanner, username);
+        if (from == null) return;
+        System.out.print("Destination account id: ");
+        Account to = ds.getAccount(scanner.nextLine().trim());
+        if (to == null) { System.out.println("No such account."); return; }
+        if (to.getAccountId().equals(from.getAccountId())) { System.out.println("Choose a different destination account."); return; }
+        System.out.print("Amount to transfer: ");
+        String s = scanner.nextLine().trim();
+        try {
+            BigDecimal amt = new BigDecimal(s).setScale(2);
+            if (amt.compareTo(BigDecimal.ZERO) <= 0) { System.out.println("Amount must be > 0."); return; }
+            String txId = TxIdGenerator.next();
+            boolean ok = ds.transfer(from, to, Money.toCents(amt), txId).join();
+            if (!ok) { System.out.println("Insufficient funds."); return; }
+            System.out.println("Transfer complete. New balance: " + from.getBalance().toPlainString());
+        } catch (NumberFormatException | ArithmeticException ex) {
+            System.out.println("Invalid amount.");
+        }
+    }
+
+    private static void txHistory(Scanner scanner, String username) {
+        Account a = promptSelectAccount(scanner, username);
+        if (a == null) return;
+        int total = ds.countTransactionsForAccount(a.getAccountId());
+        if (total == 0) {
+            System.out.println("No transactions for this account.");
+            return;
+        }
+        System.out.println("Transactions for " + a.getAccountId() + " (newest first):");
+        for (int offset = 0; offset < total; offset += HISTORY_PAGE_SIZE) {
+            List<TransactionRecord> page = ds.getTransactionsForAccount(a.getAccountId(), offset, HISTORY_PAGE_SIZE);
+            for (TransactionRecord t : page) System.out.println(" - " + t.toString());
+            if (offset + HISTORY_PAGE_SIZE >= total) break;
+            System.out.print("Show more? (y/N): ");
+            if (!scanner.nextLine().trim().equalsIgnoreCase("y")) break;
+        }
+    }
+
+    // Served from the running per-day and per-month totals, not the transaction history. Days are UTC.
+    private static void statement(Scanner scanner, String username) {
+        Account a = promptSelectAccount(scanner, username);
+        if (a == null) return;
+        AccountStatement st = ds.getStatement(a.getAccountId());
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+        YearMonth month = YearMonth.from(today);
+        System.out.println("Statement for " + a.getAccountId() + ", balance " + a.getBalance().toPlainString());
+        System.out.println("All time:   " + st.lifetime());
+        System.out.println("This month: " + st.month(month));
+        System.out.println("Today:      " + st.day(today));
+        Map<LocalDate, AccountStatement.Totals> days = st.daily(month.atDay(1), today);
+        if (!days.isEmpty()) {
+            System.out.println("Days this month:");
+            for (Map.Entry<LocalDate, AccountStatement.Totals> e : days.entrySet()) System.out.println(" - " + e.getKey() + " | " + e.getValue());
+        }
+        Map<YearMonth, AccountStatement.Totals> months = st.monthly();
+        if (!months.isEmpty()) {
+            System.out.println("By month:");
+            for (Map.Entry<YearMonth, AccountStatement.Totals> e : months.entrySet()) System.out.println(" - " + e.getKey() + " | " + e.getValue());
+        }
+    }
+
+    private static char[] readPassword(String prompt) {
+        Console console = System.console();
+        if (console != null) {
+            return console.readPassword(prompt);
+        } else {
+            return null;
+        }
+    }
+
+    private static void zeroOut(char[] arr) {
+        if (arr == null) return;
+        for (int i = 0; i < arr.length; i++) arr[i] = '\0';
+    }
+}
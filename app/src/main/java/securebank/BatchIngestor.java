@@ -0,0 +1,288 @@
+package securebank;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+// Streams a settlement file of instructions into the BankStore without the console.
+//
+//   op,accountId,amount[,toAccountId]      op = deposit | withdraw | transfer
+//
+// Rows are validated as they are read and routed by source account to one of N single-threaded
+// partitions, so instructions for the same account are applied in file order while different
+// accounts proceed in parallel. Each partition applies whole chunks through BankStore.applyBatch,
+// i.e. one journal write and one ledger write per chunk. A transfer to an account of another
+// partition waits for that partition's earlier rows, and that partition's later rows wait for
+// the transfer, so both accounts see it in file order. Rejected rows are written, with the
+// reason, to <file>.rejects; rows of a chunk whose apply throws or whose commit fails are
+// reported there as failed, and the report still covers the whole file.
+public class BatchIngestor {
+    private static final int CHUNK = 4096;
+    private static final int IN_FLIGHT_PER_PARTITION = 4;
+    private static final Pattern AMOUNT = Pattern.compile("[0-9]*(\\.[0-9]*)?"); // plain notation; no sign or exponent
+
+    public static final class Report {
+        public final long rows;
+        public final long applied;
+        public final long rejected;
+        public final long failed;
+        public final long elapsedMillis;
+        public final Path rejectsFile;
+
+        Report(long rows, long applied, long rejected, long failed, long elapsedMillis, Path rejectsFile) {
+            this.rows = rows;
+            this.applied = applied;
+            this.rejected = rejected;
+            this.failed = failed;
+            this.elapsedMillis = elapsedMillis;
+            this.rejectsFile = rejectsFile;
+        }
+
+        @Override
+        public String toString() {
+            double perSecond = elapsedMillis == 0 ? rows : rows * 1000.0 / elapsedMillis;
+            return String.format("Ingested %d rows in %d ms (%.0f rows/s): %d applied, %d rejected%s%s",
+                    rows, elapsedMillis, perSecond, applied, rejected, failed > 0 ? ", " + failed + " failed" : "",
+                    rejected + failed > 0 ? " (see " + rejectsFile + ")" : "");
+        }
+    }
+
+    // One partition's pending rows: the records to apply and, per record, the source line.
+    // after holds the chunks of other partitions that must be applied first; done completes
+    // once this chunk has been applied in memory (or given up on).
+    private static final class Chunk {
+        final int partition;
+        final List<TransactionRecord> records = new ArrayList<>(CHUNK);
+        final List<String> lines = new ArrayList<>(CHUNK);
+        final List<Long> lineNumbers = new ArrayList<>(CHUNK);
+        final List<Chunk> after = new ArrayList<>();
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+        boolean submitted;
+
+        Chunk(int partition) {
+            this.partition = partition;
+        }
+
+        void add(TransactionRecord t, String line, long lineNumber) {
+            records.add(t);
+            lines.add(line);
+            lineNumbers.add(lineNumber);
+        }
+    }
+
+    private final BankStore ds;
+    private final int partitions;
+
+    public BatchIngestor(BankStore ds) {
+        this(ds, Runtime.getRuntime().availableProcessors());
+    }
+
+    public BatchIngestor(BankStore ds, int partitions) {
+        this.ds = ds;
+        this.partitions = partitions;
+    }
+
+    // The state of one ingest: the partitions' workers and chunks, and the running counts.
+    private final class Run {
+        final ExecutorService[] workers = new ExecutorService[partitions];
+        final Semaphore[] permits = new Semaphore[partitions];
+        final Chunk[] pending = new Chunk[partitions];
+        final Chunk[] last = new Chunk[partitions]; // the partition's last submitted chunk
+        final AtomicLong applied = new AtomicLong();
+        final AtomicLong rejected = new AtomicLong();
+        final AtomicLong failed = new AtomicLong();
+        final List<CompletableFuture<?>> settled = new ArrayList<>();
+        final BufferedWriter rejects;
+
+        Run(BufferedWriter rejects) {
+            this.rejects = rejects;
+            for (int i = 0; i < partitions; i++) {
+                workers[i] = Executors.newSingleThreadExecutor();
+                permits[i] = new Semaphore(IN_FLIGHT_PER_PARTITION);
+                pending[i] = new Chunk(i);
+            }
+        }
+    }
+
+    public Report ingest(Path file) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        Path rejectsFile = file.resolveSibling(file.getFileName() + ".rejects");
+        long rows = 0;
+        Run run = null;
+
+        try (BufferedReader r = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+             BufferedWriter rejects = Files.newBufferedWriter(rejectsFile, StandardCharsets.UTF_8)) {
+            run = new Run(rejects);
+            String line;
+            long lineNumber = 0;
+            while ((line = r.readLine()) != null) {
+                lineNumber++;
+                String trimmed = line.trim();
+                if (trimmed.isEmpty() || trimmed.startsWith("#") || (lineNumber == 1 && trimmed.startsWith("op,"))) continue;
+                rows++;
+                String[] f = trimmed.split(",", -1);
+                String error = validate(f);
+                if (error != null) {
+                    reject(rejects, lineNumber, error, line);
+                    run.rejected.incrementAndGet();
+                    continue;
+                }
+                String op = f[0].trim().toLowerCase();
+                String accountId = f[1].trim();
+                long cents = parseAmount(f[2].trim());
+                String txId = TxIdGenerator.next();
+                long now = System.currentTimeMillis();
+                int p = partitionOf(accountId);
+                if (op.equals("transfer")) {
+                    int q = partitionOf(f[3].trim());
+                    if (q != p) {
+                        // The transfer waits for q's rows so far and q's later rows wait for it.
+                        if (!run.pending[q].records.isEmpty()) submit(run, run.pending[q]);
+                        if (run.last[q] != null) run.pending[p].after.add(run.last[q]);
+                        run.pending[q].after.add(run.pending[p]);
+                    }
+                    run.pending[p].add(new TransactionRecord(txId, accountId, "DEBIT", cents, now), line, lineNumber);
+                    run.pending[p].add(new TransactionRecord(txId, f[3].trim(), "CREDIT", cents, now), line, lineNumber);
+                } else {
+                    run.pending[p].add(new TransactionRecord(txId, accountId, op.equals("deposit") ? "DEPOSIT" : "WITHDRAW", cents, now), line, lineNumber);
+                }
+                if (run.pending[p].records.size() >= CHUNK) submit(run, run.pending[p]);
+            }
+            for (int p = 0; p < partitions; p++) {
+                if (!run.pending[p].records.isEmpty()) submit(run, run.pending[p]);
+            }
+            for (ExecutorService w : run.workers) w.shutdown();
+            for (ExecutorService w : run.workers) w.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            List<CompletableFuture<?>> all;
+            synchronized (run.settled) {
+                all = new ArrayList<>(run.settled);
+            }
+            for (CompletableFuture<?> c : all) c.join(); // everything durable (or failed) before reporting
+        } finally {
+            if (run != null) for (ExecutorService w : run.workers) w.shutdownNow();
+        }
+        if (run.rejected.get() + run.failed.get() == 0) Files.deleteIfExists(rejectsFile);
+        return new Report(rows, run.applied.get(), run.rejected.get(), run.failed.get(), (System.nanoTime() - start) / 1_000_000, rejectsFile);
+    }
+
+    private int partitionOf(String accountId) {
+        return Math.floorMod(accountId.hashCode(), partitions);
+    }
+
+    // Returns why the row cannot be applied, or null when it looks valid.
+    private String validate(String[] f) {
+        if (f.length < 3) return "expected op,accountId,amount[,toAccountId]";
+        String op = f[0].trim().toLowerCase();
+        boolean transfer = op.equals("transfer");
+        if (!transfer && !op.equals("deposit") && !op.equals("withdraw")) return "unknown op " + f[0].trim();
+        if (transfer ? f.length != 4 : f.length != 3) return "wrong number of fields for " + op;
+        if (f[2].trim().startsWith("-")) return "amount must be > 0";
+        long cents;
+        try {
+            cents = parseAmount(f[2].trim());
+        } catch (NumberFormatException | ArithmeticException ex) {
+            return "invalid amount";
+        }
+        if (cents <= 0) return "amount must be > 0";
+        if (ds.getAccount(f[1].trim()) == null) return "no such account " + f[1].trim();
+        if (transfer) {
+            if (ds.getAccount(f[3].trim()) == null) return "no such account " + f[3].trim();
+            if (f[3].trim().equals(f[1].trim())) return "transfer to the same account";
+        }
+        return null;
+    }
+
+    // Same rules as the console and the HTTP API: at most two decimals and the cents fit in a
+    // long (ArithmeticException otherwise). Unlike them, only plain notation, no exponent.
+    private static long parseAmount(String s) {
+        if (!AMOUNT.matcher(s).matches()) throw new NumberFormatException("not a plain amount: " + s);
+        return Money.toCents(new BigDecimal(s));
+    }
+
+    // Hands the chunk to its partition and starts a fresh one there. The chunks it waits for
+    // go first, so every worker only ever waits on work queued before its own and no partition
+    // can block on one that has not been submitted.
+    private void submit(Run run, Chunk c) throws InterruptedException {
+        if (c.submitted) return;
+        c.submitted = true;
+        for (Chunk before : c.after) submit(run, before);
+        int p = c.partition;
+        if (run.pending[p] == c) run.pending[p] = new Chunk(p);
+        run.last[p] = c;
+        run.permits[p].acquire(); // bounds how far the reader runs ahead of this partition
+        run.workers[p].execute(() -> {
+            try {
+                String[] rejections = new String[c.records.size()];
+                CompletableFuture<Void> commit;
+                try {
+                    for (Chunk before : c.after) before.done.join();
+                    commit = ds.applyBatch(c.records, rejections);
+                } catch (RuntimeException e) {
+                    fail(run, c, null, e);
+                    return;
+                } finally {
+                    c.done.complete(null);
+                }
+                for (int i = 0; i < rejections.length; i++) {
+                    if (rejections[i] == null || c.records.get(i).getType().equals("CREDIT")) continue; // counted with its DEBIT
+                    run.rejected.incrementAndGet();
+                    reject(run.rejects, c.lineNumbers.get(i), rejections[i], c.lines.get(i));
+                }
+                // The applied rows count once they are durable; if the commit fails they are failed.
+                CompletableFuture<?> settled = commit.handle((v, e) -> {
+                    if (e == null) {
+                        for (int i = 0; i < rejections.length; i++) {
+                            if (rejections[i] == null && !c.records.get(i).getType().equals("CREDIT")) run.applied.incrementAndGet();
+                        }
+                    } else {
+                        try {
+                            fail(run, c, rejections, e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+                        } catch (IOException io) {
+                            System.err.println("Could not write rejects: " + io.getMessage());
+                        }
+                    }
+                    return null;
+                });
+                synchronized (run.settled) {
+                    run.settled.add(settled);
+                }
+            } catch (IOException e) {
+                System.err.println("Could not write rejects: " + e.getMessage());
+            } finally {
+                run.permits[p].release();
+            }
+        });
+    }
+
+    // Reports the chunk's rows as failed: all of them, or with rejections only those applied.
+    private static void fail(Run run, Chunk c, String[] rejections, Throwable e) throws IOException {
+        String reason = "failed: " + e;
+        for (int i = 0; i < c.records.size(); i++) {
+            if (c.records.get(i).getType().equals("CREDIT")) continue; // counted with its DEBIT
+            if (rejections != null && rejections[i] != null) continue; // already reported as rejected
+            run.failed.incrementAndGet();
+            reject(run.rejects, c.lineNumbers.get(i), reason, c.lines.get(i));
+        }
+    }
+
+    private static void reject(BufferedWriter rejects, long lineNumber, String reason, String line) throws IOException {
+        synchronized (rejects) {
+            rejects.write(lineNumber + "," + reason + "," + line);
+            rejects.newLine();
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package securebank;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+// Fixed-width binary storage for the account snapshot and the transaction ledger.
+// Account ids and usernames are interned into names.txt and referenced by number,
+// money is stored as long cents and timestamps as epoch millis, so loading is a walk
+// over a MappedByteBuffer with no text parsing. users.txt and the balance journal
+// stay text in this mode.
+//
+// accounts.bin:     header | { int accountRef, int ownerRef, long balanceCents }*
+// transactions.bin: header | { byte[24] txId, int accountRef, byte type, byte[3] pad, long amountCents, long epochMillis }*
+// header:           int magic, int version, long snapshotSeq (0 for transactions.bin)
+public class BinaryStore implements Closeable {
+    public static final String NAMES_FILE = "names.txt";
+    public static final String ACCOUNTS_FILE = "accounts.bin";
+    public static final String TRANSACTIONS_FILE = "transactions.bin";
+
+    static final int HEADER_BYTES = 16;
+    static final int ACCOUNT_RECORD_BYTES = 16;
+    static final int TX_RECORD_BYTES = 48;
+    static final int TX_ID_BYTES = 24;
+    private static final int VERSION = 1;
+    private static final int ACCOUNTS_MAGIC = 0x42414331; // "BAC1"
+    private static final int TRANSACTIONS_MAGIC = 0x42545831; // "BTX1"
+    private static final String[] TYPES = {null, "DEPOSIT", "WITHDRAW", "DEBIT", "CREDIT"};
+
+    private final Path namesFile;
+    private final Path accountsFile;
+    private final Path transactionsFile;
+
+    // name <-> ref; refs are line numbers in names.txt
+    private final Map<String, Integer> refs = new ConcurrentHashMap<>();
+    private volatile String[] names = new String[1024];
+    private volatile int nameCount;
+    private volatile CompletableFuture<Void> lastNameWrite = CompletableFuture.completedFuture(null);
+
+    private final JournalWriter namesWriter;
+    private final JournalWriter transactionsWriter; // null when a SegmentedLedger holds the transactions
+
+    public static boolean isPresent(Path baseDir) {
+        return Files.exists(baseDir.resolve(TRANSACTIONS_FILE));
+    }
+
+    public BinaryStore(Path baseDir, FsyncPolicy fsyncPolicy) throws IOException {
+        this(baseDir, fsyncPolicy, true);
+    }
+
+    public BinaryStore(Path baseDir, FsyncPolicy fsyncPolicy, boolean withTransactions) throws IOException {
+        namesFile = baseDir.resolve(NAMES_FILE);
+        accountsFile = baseDir.resolve(ACCOUNTS_FILE);
+        transactionsFile = baseDir.resolve(TRANSACTIONS_FILE);
+        if (!Files.exists(namesFile)) Files.createFile(namesFile);
+        for (String name : Files.readAllLines(namesFile, StandardCharsets.UTF_8)) addName(name);
+        namesWriter = new JournalWriter(namesFile, fsyncPolicy);
+        if (withTransactions) {
+            if (!Files.exists(transactionsFile)) createLedgerFile(transactionsFile);
+            truncateTornTail(transactionsFile);
+            transactionsWriter = new JournalWriter(transactionsFile, fsyncPolicy);
+        } else {
+            transactionsWriter = null;
+        }
+    }
+
+    // Names
+
+    public int intern(String name) {
+        Integer ref = refs.get(name);
+        if (ref != null) return ref;
+        synchronized (this) {
+            ref = refs.get(name);
+            if (ref != null) return ref;
+            int r = addName(name);
+            lastNameWrite = namesWriter.append(name); // names.txt order is ref order
+            return r;
+        }
+    }
+
+    public Integer refIfPresent(String name) {
+        return refs.get(name);
+    }
+
+    public String name(int ref) {
+        String[] n = names;
+        return ref >= 0 && ref < n.length ? n[ref] : null;
+    }
+
+    // Completes once every name interned so far is durable.
+    public CompletableFuture<Void> namesDurable() { return lastNameWrite; }
+
+    private synchronized int addName(String name) {
+        int r = nameCount;
+        if (r == names.length) names = Arrays.copyOf(names, r * 2);
+        names[r] = name;
+        refs.put(name, r);
+        nameCount = r + 1;
+        return r;
+    }
+
+    // Accounts snapshot
+
+    // Returns the journal sequence the snapshot covers, or 0 when there is none.
+    public long readAccounts(Consumer<Account> sink) throws IOException {
+        if (!Files.exists(accountsFile)) return 0;
+        try (FileChannel ch = FileChannel.open(accountsFile, StandardOpenOption.READ)) {
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            long seq = checkHeader(buf, ACCOUNTS_MAGIC, accountsFile);
+            while (buf.remaining() >= ACCOUNT_RECORD_BYTES) {
+                String accountId = name(buf.getInt());
+                String owner = name(buf.getInt());
+                long cents = buf.getLong();
+                if (accountId != null && owner != null) sink.accept(new Account(accountId, owner, cents));
+            }
+            return seq;
+        }
+    }
+
+    // Writes the snapshot to a temp file, forces it and renames it over the old one.
+    public void writeAccounts(long seq, List<Account> accounts, long[] balances) throws IOException {
+        Path tmp = accountsFile.resolveSibling(ACCOUNTS_FILE + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buf = ByteBuffer.allocate(64 * 1024);
+            buf.putInt(ACCOUNTS_MAGIC).putInt(VERSION).putLong(seq);
+            for (int i = 0; i < accounts.size(); i++) {
+                if (buf.remaining() < ACCOUNT_RECORD_BYTES) drain(ch, buf);
+                Account a = accounts.get(i);
+                buf.putInt(intern(a.getAccountId())).putInt(intern(a.getOwnerUsername())).putLong(balances[i]);
+            }
+            drain(ch, buf);
+            ch.force(true);
+        }
+        namesDurable().join();
+        Files.move(tmp, accountsFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Transactions
+
+    // Decodes the ledger in record-aligned chunks on the calling fork-join pool; one result per
+    // chunk, in file order (see ParallelLoader).
+    public <R> List<R> readTransactions(Supplier<R> newChunk, BiConsumer<R, TransactionRecord> sink) throws IOException {
+        try (FileChannel ch = FileChannel.open(transactionsFile, StandardOpenOption.READ)) {
+            checkLedgerHeader(ch.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES), transactionsFile);
+        }
+        return ParallelLoader.parseRecords(transactionsFile, HEADER_BYTES, TX_RECORD_BYTES, newChunk, (chunk, buf, pos) -> {
+            TransactionRecord t = decodeTransaction(buf, pos);
+            if (t != null) sink.accept(chunk, t);
+        });
+    }
+
+    // All records go out in one write, in order.
+    public CompletableFuture<Void> appendTransactions(List<TransactionRecord> records) {
+        CompletableFuture<Void> written = transactionsWriter.appendBytes(encodeTransactions(records));
+        return CompletableFuture.allOf(namesDurable(), written);
+    }
+
+    // Record layout shared with the SegmentedLedger segment files.
+    byte[] encodeTransactions(List<TransactionRecord> records) {
+        ByteBuffer buf = ByteBuffer.allocate(records.size() * TX_RECORD_BYTES);
+        for (TransactionRecord t : records) encode(t, buf);
+        return buf.array();
+    }
+
+    private void encode(TransactionRecord t, ByteBuffer buf) {
+        byte[] id = t.getTxId().getBytes(StandardCharsets.US_ASCII);
+        if (id.length > TX_ID_BYTES) throw new IllegalArgumentException("Transaction id longer than " + TX_ID_BYTES + " bytes: " + t.getTxId());
+        int type = typeCode(t.getType());
+        buf.put(id);
+        for (int i = id.length; i < TX_ID_BYTES; i++) buf.put((byte) 0);
+        buf.putInt(intern(t.getAccountId()));
+        buf.put((byte) type).put((byte) 0).put((byte) 0).put((byte) 0);
+        buf.putLong(t.getAmountCents());
+        buf.putLong(t.getEpochMillis());
+    }
+
+    // Decodes the record starting at absolute offset pos without moving the buffer.
+    TransactionRecord decodeTransaction(ByteBuffer buf, int pos) {
+        byte[] txId = new byte[TX_ID_BYTES];
+        int len = 0;
+        while (len < TX_ID_BYTES && (txId[len] = buf.get(pos + len)) != 0) len++;
+        String accountId = name(accountRefAt(buf, pos));
+        int type = buf.get(pos + TX_ID_BYTES + 4);
+        long cents = buf.getLong(pos + TX_ID_BYTES + 8);
+        long millis = epochMillisAt(buf, pos);
+        if (accountId == null || type <= 0 || type >= TYPES.length) return null;
+        return new TransactionRecord(new String(txId, 0, len, StandardCharsets.US_ASCII), accountId, TYPES[type],
+                cents, millis);
+    }
+
+    static int accountRefAt(ByteBuffer buf, int pos) {
+        return buf.getInt(pos + TX_ID_BYTES);
+    }
+
+    static long epochMillisAt(ByteBuffer buf, int pos) {
+        return buf.getLong(pos + TX_ID_BYTES + 16);
+    }
+
+    private static int typeCode(String type) {
+        for (int i = 1; i < TYPES.length; i++) if (TYPES[i].equals(type)) return i;
+        throw new IllegalArgumentException("Unknown transaction type: " + type);
+    }
+
+    // A crash mid-append can leave a partial record; drop it so later appends stay aligned.
+    static void truncateTornTail(Path ledgerFile) throws IOException {
+        try (FileChannel ch = FileChannel.open(ledgerFile, StandardOpenOption.WRITE)) {
+            long torn = (ch.size() - HEADER_BYTES) % TX_RECORD_BYTES;
+            if (torn != 0) ch.truncate(ch.size() - torn);
+        }
+    }
+
+    static void createLedgerFile(Path file) throws IOException {
+        writeHeader(file, TRANSACTIONS_MAGIC, 0);
+    }
+
+    static void checkLedgerHeader(ByteBuffer buf, Path file) throws IOException {
+        checkHeader(buf, TRANSACTIONS_MAGIC, file);
+    }
+
+    private static void writeHeader(Path file, int magic, long seq) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            ByteBuffer buf = ByteBuffer.allocate(HEADER_BYTES);
+            buf.putInt(magic).putInt(VERSION).putLong(seq);
+            drain(ch, buf);
+            ch.force(true);
+        }
+    }
+
+    private static long checkHeader(ByteBuffer buf, int magic, Path file) throws IOException {
+        if (buf.remaining() < HEADER_BYTES || buf.getInt() != magic || buf.getInt() != VERSION) {
+            throw new IOException("Not a version " + VERSION + " binary store file: " + file);
+        }
+        return buf.getLong();
+    }
+
+    private static void drain(FileChannel ch, ByteBuffer buf) throws IOException {
+        buf.flip();
+        while (buf.hasRemaining()) ch.write(buf);
+        buf.clear();
+    }
+
+    @Override
+    public void close() {
+        if (transactionsWriter != null) transactionsWriter.close();
+        namesWriter.close();
+    }
+}
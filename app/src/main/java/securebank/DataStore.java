@@ -0,0 +1,1048 @@
+package securebank;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+public class DataStore implements BankStore {
+    private static final String SNAPSHOT_HEADER = "#snapshot";
+    private static final String JOURNAL_PREFIX = "accounts-";
+    private static final String JOURNAL_SUFFIX = ".journal";
+    private static final long COMPACT_INTERVAL_SECONDS = 30;
+    private static final int DEFAULT_SEGMENT_RECORDS = 1 << 18;
+    private static final int DEFAULT_HOT_SEGMENTS = 1;
+    private static final String IDEMPOTENCY_FILE = "idempotency.log";
+    private static final String STATEMENTS_FILE = "statements.txt";
+    private static final int MAX_IDEMPOTENCY_KEY_LENGTH = 64;
+    private static final long DAY_MILLIS = 86_400_000L;
+    private static final long AS_OF_MIN = -62_135_596_800_000L; // 0001-01-01T00:00:00Z
+    private static final long AS_OF_MAX = 253_402_300_799_999L; // 9999-12-31T23:59:59.999Z
+    private static final Metrics.Histogram PERSIST = Metrics.timer("store.persistAccounts");
+    private static final Metrics.Histogram PERSIST_STATEMENTS = Metrics.timer("store.persistStatements");
+    private static final Metrics.Histogram SNAPSHOT_PAUSE = Metrics.timer("store.snapshotPause"); // write lock held
+    private static final Metrics.Histogram LOCK_WAIT = Metrics.timer("store.lockWait");
+    private static final LongAdder LOCK_CONTENDED = Metrics.counter("store.lockContended");
+    private static final LongAdder SNAPSHOT_BYTES = Metrics.counter("store.snapshotBytes");
+
+    private final Path baseDir;
+    private final Path usersFile;
+    private final Path accountsFile; // latest balance snapshot
+    private final Path transactionsFile;
+
+    // In-memory caches
+    private final Map<String, User> users = new ConcurrentHashMap<>();
+    private final Map<String, Account> accounts = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> accountIdsByOwner = new ConcurrentHashMap<>();
+    // accountId -> that account's transactions, oldest first; each list is guarded by its own monitor
+    private final Map<String, List<TransactionRecord>> transactionsByAccount = new ConcurrentHashMap<>();
+    // accountId -> running totals of its ledger; the map's monitor orders ledger appends (see appendLedger)
+    private final Map<String, AccountStatement> statements = new ConcurrentHashMap<>();
+    private final Queue<AccountStatement> dirtyStatements = new ConcurrentLinkedQueue<>();
+    private long statementLines; // lines in statements.txt, guarded by compactionLock
+
+    // Balance journal: every change is appended as one record tagged with a sequence number.
+    // Balance changes hold the read lock; a snapshot takes the write lock just long enough
+    // to capture balances and start a new journal generation.
+    private final ReentrantReadWriteLock snapshotLock = new ReentrantReadWriteLock();
+    private final Object compactionLock = new Object();
+    private final AtomicLong journalSeq = new AtomicLong();
+    private final AtomicLong journalRecordsSinceSnapshot = new AtomicLong();
+    // sequences of the open balance snapshots (with counts); writers read the oldest from
+    // oldestSnapshot to know which superseded versions of a balance to keep (see Account)
+    private final TreeMap<Long, Integer> openSnapshots = new TreeMap<>();
+    private volatile long oldestSnapshot = Account.KEEP_NONE;
+    private final ScheduledExecutorService compactor;
+
+    // fixed-width snapshot and ledger files instead of accounts.txt/transactions.txt; null in text mode
+    private final BinaryStore binary;
+    // on-disk ledger with only the active segment in memory; null when the whole ledger is indexed in heap
+    private final SegmentedLedger ledger;
+
+    // one long-lived group-commit writer per file
+    private final FsyncPolicy fsyncPolicy;
+    private final JournalWriter usersWriter;
+    private final JournalWriter transactionsWriter; // text ledger only
+    private volatile JournalWriter journalWriter; // current balance journal generation
+
+    // idempotency key -> txId for recent deposits/withdrawals, backed by idempotency.log (key|txId|millis)
+    private final DedupeCache dedupe = new DedupeCache(
+            TimeUnit.MINUTES.toMillis(Long.getLong("bank.idempotency.ttlMinutes", 24 * 60)),
+            Integer.getInteger("bank.idempotency.maxKeys", 1_000_000));
+    private final JournalWriter idempotencyWriter;
+    private String loadReport;
+
+    // Binary storage is used when the directory already holds it (see LedgerConverter)
+    // or when -Dbank.storage=binary is set for a new directory. -Dbank.ledger=lazy (or an
+    // existing ledger/ directory) keeps the transaction ledger on disk in a SegmentedLedger,
+    // which implies binary storage; bank.ledger.segmentRecords and bank.ledger.segmentMillis
+    // bound its segments and bank.ledger.hotSegments is how many sealed ones stay uncompressed.
+    public DataStore(String baseDir) throws IOException {
+        this(baseDir, FsyncPolicy.fromSystemProperty());
+    }
+
+    public DataStore(String baseDir, FsyncPolicy fsyncPolicy) throws IOException {
+        this.fsyncPolicy = fsyncPolicy;
+        this.baseDir = Paths.get(baseDir);
+        Files.createDirectories(this.baseDir);
+        usersFile = Paths.get(baseDir, "users.txt");
+        accountsFile = Paths.get(baseDir, "accounts.txt");
+        transactionsFile = Paths.get(baseDir, "transactions.txt");
+        boolean lazyLedger = SegmentedLedger.isPresent(this.baseDir) || "lazy".equals(System.getProperty("bank.ledger"));
+        boolean useBinary = lazyLedger || BinaryStore.isPresent(this.baseDir) || "binary".equals(System.getProperty("bank.storage"));
+        // ensure files exist
+        if (!Files.exists(usersFile)) Files.createFile(usersFile);
+        if (!useBinary && !Files.exists(accountsFile)) Files.createFile(accountsFile);
+        if (!useBinary && !Files.exists(transactionsFile)) Files.createFile(transactionsFile);
+        binary = useBinary ? new BinaryStore(this.baseDir, fsyncPolicy, !lazyLedger) : null;
+        ledger = lazyLedger
+                ? new SegmentedLedger(this.baseDir, binary, fsyncPolicy, Integer.getInteger("bank.ledger.segmentRecords", DEFAULT_SEGMENT_RECORDS),
+                        Long.getLong("bank.ledger.segmentMillis", 0), Integer.getInteger("bank.ledger.hotSegments", DEFAULT_HOT_SEGMENTS))
+                : null;
+        loadAll();
+        usersWriter = new JournalWriter(usersFile, fsyncPolicy);
+        idempotencyWriter = new JournalWriter(loadIdempotencyLog(), fsyncPolicy);
+        transactionsWriter = useBinary ? null : new JournalWriter(transactionsFile, fsyncPolicy);
+        // fold any journal left over from the previous run into a fresh snapshot
+        persistAccounts();
+
+        compactor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "datastore-compactor");
+            t.setDaemon(true);
+            return t;
+        });
+        compactor.scheduleWithFixedDelay(this::compactQuietly,
+                COMPACT_INTERVAL_SECONDS, COMPACT_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    // The three files load concurrently on a fork-join pool sized to the cores, and large files
+    // are parsed in line-aligned chunks on the same pool (see ParallelLoader). Each loader
+    // returns its row count for the startup report.
+    private void loadAll() throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(Integer.getInteger("bank.load.threads", Runtime.getRuntime().availableProcessors()));
+        try {
+            ForkJoinTask<String> u = pool.submit(() -> timedLoad("users", "store.loadUsers", this::loadUsers));
+            ForkJoinTask<String> a = pool.submit(() -> timedLoad("accounts", "store.loadAccounts", this::loadAccounts));
+            ForkJoinTask<String> t = pool.submit(() -> timedLoad("transactions", "store.loadTransactions", this::loadTransactions));
+            ForkJoinTask<String> s = pool.submit(() -> timedLoad("statements", "store.loadStatements", this::loadStatements));
+            String loaded = String.join(", ", await(u), await(a), await(t), await(s));
+            // statements catch up on the ledger once accounts and transactions are in
+            ForkJoinTask<String> c = pool.submit(() -> timedLoad("statement catch-up", "store.catchUpStatements", this::catchUpStatements));
+            loadReport = "Loaded " + loaded + ", " + await(c);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private interface Loader {
+        long load() throws IOException;
+    }
+
+    private static String timedLoad(String what, String metric, Loader loader) throws IOException {
+        long start = System.nanoTime();
+        long rows = loader.load();
+        long nanos = System.nanoTime() - start;
+        Metrics.timer(metric).record(nanos);
+        return String.format("%s: %d rows in %d ms (%.0f rows/s)", what, rows, nanos / 1_000_000, rows * 1e9 / Math.max(1, nanos));
+    }
+
+    private static String await(ForkJoinTask<String> task) throws IOException {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while loading");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new IOException(cause);
+        }
+    }
+
+    // Chunks are parsed in parallel but applied in file order: the last line for a username wins.
+    private long loadUsers() throws IOException {
+        List<List<User>> chunks = ParallelLoader.parseLines(usersFile, ArrayList::new, (chunk, line) -> {
+            if (line.trim().isEmpty()) return;
+            User u = User.fromStorageString(line);
+            if (u != null) chunk.add(u);
+        });
+        long rows = 0;
+        for (List<User> chunk : chunks) {
+            for (User u : chunk) users.put(u.getUsername(), u);
+            rows += chunk.size();
+        }
+        return rows;
+    }
+
+    // Newest snapshot first, then every journal generation in order, skipping
+    // records the snapshot already contains. Journal replay stays sequential: its records
+    // depend on one another (OPEN before DELTA).
+    private long loadAccounts() throws IOException {
+        long[] rows = new long[1];
+        long snapshotSeq = binary != null
+                ? binary.readAccounts(a -> { putAccount(a); rows[0]++; })
+                : loadTextSnapshot(rows);
+        long maxSeq = snapshotSeq;
+        for (Path journal : listJournals()) {
+            try (BufferedReader r = Files.newBufferedReader(journal, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = r.readLine()) != null) {
+                    if (line.trim().isEmpty()) continue;
+                    long seq = replayJournalLine(line, snapshotSeq);
+                    if (seq > maxSeq) maxSeq = seq;
+                    rows[0]++;
+                }
+            }
+        }
+        journalSeq.set(maxSeq);
+        return rows[0];
+    }
+
+    private static final class SnapshotChunk {
+        long rows;
+        long seq = -1;
+    }
+
+    // Snapshot lines are independent of each other, so every chunk publishes its accounts directly.
+    private long loadTextSnapshot(long[] rows) throws IOException {
+        long snapshotSeq = 0;
+        List<SnapshotChunk> chunks = ParallelLoader.parseLines(accountsFile, SnapshotChunk::new, (chunk, line) -> {
+            if (line.trim().isEmpty()) return;
+            if (line.startsWith(SNAPSHOT_HEADER + "|")) {
+                chunk.seq = Long.parseLong(line.substring(SNAPSHOT_HEADER.length() + 1).trim());
+                return;
+            }
+            Account a = Account.fromStorageString(line);
+            if (a == null) return;
+            putAccount(a);
+            chunk.rows++;
+        });
+        for (SnapshotChunk c : chunks) {
+            if (c.seq >= 0) snapshotSeq = c.seq;
+            rows[0] += c.rows;
+        }
+        return snapshotSeq;
+    }
+
+    private long loadTransactions() throws IOException {
+        if (ledger != null) return 0; // opened lazily by SegmentedLedger
+        List<List<TransactionRecord>> chunks;
+        if (binary != null) {
+            chunks = binary.readTransactions(ArrayList::new, List::add);
+        } else {
+            chunks = ParallelLoader.parseLines(transactionsFile, ArrayList::new, (chunk, line) -> {
+                if (line.trim().isEmpty()) return;
+                TransactionRecord t = TransactionRecord.fromStorageString(line);
+                if (t != null) chunk.add(t);
+            });
+        }
+        return indexChunks(chunks);
+    }
+
+    // Indexes the parsed chunks with one task per account partition: each task walks every chunk
+    // in file order but only indexes its own accounts, so per-account history stays oldest first
+    // and no two tasks touch the same list.
+    private long indexChunks(List<List<TransactionRecord>> chunks) {
+        int partitions = ForkJoinTask.inForkJoinPool() ? ForkJoinTask.getPool().getParallelism() : 1;
+        IntStream.range(0, partitions).parallel().forEach(p -> {
+            for (List<TransactionRecord> chunk : chunks) {
+                for (TransactionRecord t : chunk) {
+                    if (partitions == 1 || Math.floorMod(t.getAccountId().hashCode(), partitions) == p) indexTransaction(t);
+                }
+            }
+        });
+        long rows = 0;
+        for (List<TransactionRecord> chunk : chunks) rows += chunk.size();
+        return rows;
+    }
+
+    // statements.txt is append-only like users.txt: chunks are applied in file order and the
+    // last valid line for an account wins.
+    private long loadStatements() throws IOException {
+        Path file = baseDir.resolve(STATEMENTS_FILE);
+        if (!Files.exists(file)) return 0;
+        long[] lines = new long[1];
+        List<List<AccountStatement>> chunks = ParallelLoader.parseLines(file, ArrayList::new, (chunk, line) -> {
+            if (line.trim().isEmpty()) return;
+            AccountStatement st = AccountStatement.fromStorageString(line);
+            if (st != null) chunk.add(st);
+        });
+        for (List<AccountStatement> chunk : chunks) {
+            for (AccountStatement st : chunk) statements.put(st.getAccountId(), st);
+            lines[0] += chunk.size();
+        }
+        statementLines = lines[0];
+        return lines[0];
+    }
+
+    // Folds each account's ledger records past the count its statement covers. A statement
+    // ahead of the ledger (records lost in a crash) is rebuilt from the whole history, as is
+    // every account when statements.txt is missing. The opening balance is not stored: with
+    // nothing running yet it is whatever the recovered balance is net of the whole ledger.
+    // Returns the records folded.
+    private long catchUpStatements() {
+        Set<String> ids = new HashSet<>(accounts.keySet());
+        ids.addAll(transactionsByAccount.keySet());
+        LongAdder folded = new LongAdder();
+        ids.parallelStream().forEach(id -> {
+            int n = countTransactionsForAccount(id);
+            Account a = accounts.get(id);
+            AccountStatement st = statements.get(id);
+            if (st == null || st.records() > n) {
+                if (st == null && n == 0 && (a == null || a.getBalanceCents() == 0)) return;
+                st = new AccountStatement(id);
+                statements.put(id, st);
+            }
+            int behind = (int) (n - st.records());
+            if (behind > 0) {
+                List<TransactionRecord> recent = getTransactionsForAccount(id, 0, behind); // newest first
+                boolean dirtied = false;
+                for (int i = recent.size() - 1; i >= 0; i--) dirtied |= st.add(recent.get(i));
+                if (dirtied) dirtyStatements.add(st);
+                folded.add(behind);
+            }
+            if (a != null) st.setOpening(a.getBalanceCents() - st.lifetime().net());
+        });
+        return folded.sum();
+    }
+
+    // Per-file row counts and timings from startup.
+    public String getLoadReport() { return loadReport; }
+
+    // Users
+    // Reads go straight to the concurrent maps; only writers take the DataStore monitor.
+    public boolean usernameExists(String username) {
+        return users.containsKey(username);
+    }
+    // The returned future completes once the record is durable under the configured FsyncPolicy,
+    // with false and nothing written when the username is already taken.
+    public synchronized CompletableFuture<Boolean> addUser(User user) {
+        if (users.putIfAbsent(user.getUsername(), user) != null) return CompletableFuture.completedFuture(false);
+        return usersWriter.append(user.toStorageString()).thenApply(v -> true);
+    }
+    public User getUser(String username) { return users.get(username); }
+    public Collection<User> getUsers() { return Collections.unmodifiableCollection(users.values()); }
+    // users.txt is append-only; the last line for a username wins on load.
+    public synchronized CompletableFuture<Void> updateUser(User user) {
+        users.put(user.getUsername(), user);
+        return usersWriter.append(user.toStorageString());
+    }
+
+    // Accounts
+    public CompletableFuture<Void> addAccount(Account account) {
+        lockForUpdate();
+        try {
+            // OPEN is queued before the account is published, so no DELTA for it can precede it in the journal
+            CompletableFuture<Void> journaled = appendJournal(String.join("|", "OPEN", account.toStorageString()), account.current());
+            if (account.getBalanceCents() != 0) {
+                synchronized (statements) {
+                    statements.computeIfAbsent(account.getAccountId(), AccountStatement::new).setOpening(account.getBalanceCents());
+                }
+            }
+            putAccount(account);
+            if (binary == null) return journaled;
+            binary.intern(account.getAccountId());
+            binary.intern(account.getOwnerUsername());
+            return CompletableFuture.allOf(journaled, binary.namesDurable());
+        } finally {
+            snapshotLock.readLock().unlock();
+        }
+    }
+    public Account getAccount(String accountId) { return accounts.get(accountId); }
+    public Collection<Account> getAccounts() { return Collections.unmodifiableCollection(accounts.values()); }
+    public List<Account> getAccountsForUser(String username) {
+        Set<String> ids = accountIdsByOwner.get(username);
+        if (ids == null) return new ArrayList<>();
+        List<Account> list = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            Account a = accounts.get(id);
+            if (a != null) list.add(a);
+        }
+        list.sort(Comparator.comparing(Account::getAccountId)); // stable numbering for menus
+        return list;
+    }
+
+    // The account is published to the id map before the owner index, so any id found
+    // through the index always resolves.
+    private void putAccount(Account account) {
+        accounts.put(account.getAccountId(), account);
+        accountIdsByOwner.computeIfAbsent(account.getOwnerUsername(), k -> ConcurrentHashMap.newKeySet())
+                .add(account.getAccountId());
+    }
+
+    // Amounts are in cents. Balances move with lock-free CAS; the read lock only keeps each
+    // change and its journal record inside the same journal generation, and its balance
+    // version on the right side of any snapshot.
+    public CompletableFuture<Void> deposit(Account account, long cents) {
+        lockForUpdate();
+        try {
+            Account.Version v = account.deposit(cents, oldestSnapshot);
+            return appendJournal(String.join("|", "DELTA", account.getAccountId(), Money.format(cents)), v);
+        } finally {
+            snapshotLock.readLock().unlock();
+        }
+    }
+
+    // Completes with false, without journaling anything, when funds are insufficient.
+    public CompletableFuture<Boolean> withdraw(Account account, long cents) {
+        lockForUpdate();
+        try {
+            Account.Version v = account.withdraw(cents, oldestSnapshot);
+            if (v == null) return CompletableFuture.completedFuture(false);
+            return appendJournal(String.join("|", "DELTA", account.getAccountId(), Money.format(-cents)), v)
+                    .thenApply(ok -> true);
+        } finally {
+            snapshotLock.readLock().unlock();
+        }
+    }
+
+    // Moves money between two accounts as one unit: the balance journal gets a single TRANSFER
+    // record and the ledger a DEBIT/CREDIT pair sharing txId in one write. Both legs are lock-free
+    // CAS updates, withdrawal first so money is never created, and both happen under the same read
+    // lock so a snapshot sees either neither or both. No account locks are taken, so opposing
+    // transfers cannot deadlock. Completes with false when funds are insufficient.
+    public CompletableFuture<Boolean> transfer(Account from, Account to, long cents, String txId) {
+        if (from.getAccountId().equals(to.getAccountId())) throw new IllegalArgumentException("Cannot transfer to the same account");
+        CompletableFuture<Void> journaled;
+        lockForUpdate();
+        try {
+            long keep = oldestSnapshot;
+            Account.Version debited = from.withdraw(cents, keep);
+            if (debited == null) return CompletableFuture.completedFuture(false);
+            Account.Version credited;
+            try {
+                credited = to.deposit(cents, keep);
+            } catch (ArithmeticException overflow) {
+                stampUndone(debited, from.applyDelta(cents, keep));
+                throw overflow;
+            }
+            journaled = appendJournal(String.join("|", "TRANSFER", from.getAccountId(), to.getAccountId(), Money.format(cents)),
+                    debited, credited);
+        } finally {
+            snapshotLock.readLock().unlock();
+        }
+        TransactionRecord debit = TransactionRecord.create(txId, from.getAccountId(), "DEBIT", cents);
+        TransactionRecord credit = new TransactionRecord(txId, to.getAccountId(), "CREDIT", cents, debit.getEpochMillis());
+        CompletableFuture<Void> recorded = appendLedger(List.of(debit, credit));
+        return CompletableFuture.allOf(journaled, recorded).thenApply(v -> true);
+    }
+
+    // Applies a chunk of ledger-shaped instructions with one journal append and one ledger
+    // append for the whole chunk. DEPOSIT and WITHDRAW records act on their account; a DEBIT
+    // immediately followed by its CREDIT is a transfer. rejections[i] is null when record i took
+    // effect and otherwise says why not (a withdrawal or transfer without funds is skipped,
+    // never partially applied); a transfer's reason is on both of its records.
+    public CompletableFuture<Void> applyBatch(List<TransactionRecord> records, String[] rejections) {
+        List<String> journal = new ArrayList<>(records.size());
+        List<Account.Version> made = new ArrayList<>(2 * records.size()); // two per journal line, the second null unless a transfer
+        List<TransactionRecord> ledgerRecords = new ArrayList<>(records.size());
+        lockForUpdate();
+        try {
+            long keep = oldestSnapshot;
+            for (int i = 0; i < records.size(); i++) {
+                TransactionRecord t = records.get(i);
+                Account a = accounts.get(t.getAccountId());
+                long cents = t.getAmountCents();
+                String why = null;
+                if (a == null) {
+                    why = "no such account " + t.getAccountId();
+                } else if (cents <= 0) {
+                    why = "amount must be > 0";
+                } else if (t.getType().equals("DEPOSIT")) {
+                    try {
+                        made.add(a.deposit(cents, keep));
+                        made.add(null);
+                        journal.add(String.join("|", "DELTA", a.getAccountId(), Money.format(cents)));
+                    } catch (ArithmeticException overflow) {
+                        why = "balance would overflow";
+                    }
+                } else if (t.getType().equals("WITHDRAW")) {
+                    Account.Version v = a.withdraw(cents, keep);
+                    if (v == null) {
+                        why = "insufficient funds";
+                    } else {
+                        made.add(v);
+                        made.add(null);
+                        journal.add(String.join("|", "DELTA", a.getAccountId(), Money.format(-cents)));
+                    }
+                } else if (t.getType().equals("DEBIT") && i + 1 < records.size() && records.get(i + 1).getType().equals("CREDIT")) {
+                    TransactionRecord credit = records.get(++i);
+                    Account to = accounts.get(credit.getAccountId());
+                    if (to == null) {
+                        why = "no such account " + credit.getAccountId();
+                    } else if (to == a) {
+                        why = "transfer to the same account";
+                    } else if (credit.getAmountCents() != cents) {
+                        why = "credit does not match debit";
+                    } else {
+                        Account.Version debited = a.withdraw(cents, keep);
+                        if (debited == null) {
+                            why = "insufficient funds";
+                        } else {
+                            try {
+                                made.add(to.deposit(cents, keep));
+                                made.add(debited);
+                            } catch (ArithmeticException overflow) {
+                                stampUndone(debited, a.applyDelta(cents, keep));
+                                why = "balance would overflow";
+                            }
+                        }
+                    }
+                    if (why == null) {
+                        journal.add(String.join("|", "TRANSFER", a.getAccountId(), to.getAccountId(), Money.format(cents)));
+                        ledgerRecords.add(t);
+                        ledgerRecords.add(credit);
+                    }
+                    rejections[i - 1] = why;
+                    rejections[i] = why;
+                    continue;
+                } else {
+                    why = "unexpected " + t.getType() + " record";
+                }
+                rejections[i] = why;
+                if (why == null) ledgerRecords.add(t);
+            }
+            if (journal.isEmpty()) return CompletableFuture.completedFuture(null);
+            long first = journalSeq.getAndAdd(journal.size()) + 1;
+            for (int i = 0; i < journal.size(); i++) {
+                journal.set(i, (first + i) + "|" + journal.get(i));
+                made.get(2 * i).seq = first + i;
+                if (made.get(2 * i + 1) != null) made.get(2 * i + 1).seq = first + i;
+            }
+            journalRecordsSinceSnapshot.addAndGet(journal.size());
+            CompletableFuture<Void> journaled = journalWriter.append(journal);
+            return CompletableFuture.allOf(journaled, appendLedger(ledgerRecords));
+        } finally {
+            snapshotLock.readLock().unlock();
+        }
+    }
+
+    // Balance snapshots. Opening one only takes the write side of snapshotLock long enough to
+    // read the journal sequence: every change stamped at or before it is complete and every
+    // later one is stamped after it, so the view is a cut of the journal. See BalanceSnapshot.
+    public BalanceSnapshot snapshot() {
+        return BalanceSnapshot.open(new DataStore[] { this });
+    }
+
+    Lock snapshotWriteLock() { return snapshotLock.writeLock(); }
+
+    // Held by a sharded transfer around both of its legs; the writes under it take it again.
+    Lock snapshotReadLock() { return snapshotLock.readLock(); }
+
+    // Caller holds the write side of snapshotLock.
+    long registerSnapshot() {
+        long seq = journalSeq.get();
+        synchronized (openSnapshots) {
+            openSnapshots.merge(seq, 1, Integer::sum);
+            oldestSnapshot = openSnapshots.firstKey();
+        }
+        return seq;
+    }
+
+    void releaseSnapshot(long seq) {
+        synchronized (openSnapshots) {
+            openSnapshots.computeIfPresent(seq, (k, n) -> n > 1 ? n - 1 : null);
+            oldestSnapshot = openSnapshots.isEmpty() ? Account.KEEP_NONE : openSnapshots.firstKey();
+        }
+    }
+
+    // Writes a full snapshot (temp file + atomic rename) and drops the journal generations it
+    // covers. The write lock is held only to fix the sequence and roll the journal; balances
+    // as of that sequence are read afterwards, with writers running.
+    public void persistAccounts() throws IOException {
+        long start = System.nanoTime();
+        synchronized (compactionLock) {
+            long seq;
+            List<Account> snapshot;
+            long[] balances;
+            CompletableFuture<Void> rolled;
+            long waitStart = System.nanoTime();
+            snapshotLock.writeLock().lock();
+            long locked = System.nanoTime();
+            Metrics.timer("store.snapshotLockWait").record(locked - waitStart);
+            try {
+                seq = registerSnapshot();
+                Path next = baseDir.resolve(journalName(seq + 1));
+                if (journalWriter == null) {
+                    journalWriter = new JournalWriter(next, fsyncPolicy);
+                    rolled = CompletableFuture.completedFuture(null);
+                } else {
+                    rolled = journalWriter.roll(next);
+                }
+                journalRecordsSinceSnapshot.set(0);
+            } finally {
+                snapshotLock.writeLock().unlock();
+                SNAPSHOT_PAUSE.recordSince(locked);
+            }
+            // balances as of seq are read while writers carry on
+            try {
+                snapshot = new ArrayList<>(accounts.size());
+                balances = new long[accounts.size()];
+                for (Account a : accounts.values()) {
+                    long b = a.balanceAt(seq);
+                    if (b == Account.ABSENT) continue; // opened after seq; its OPEN record is in the next generation
+                    if (snapshot.size() == balances.length) balances = Arrays.copyOf(balances, 2 * balances.length + 16);
+                    balances[snapshot.size()] = b;
+                    snapshot.add(a);
+                }
+            } finally {
+                releaseSnapshot(seq);
+            }
+
+            rolled.join(); // older generations are complete on disk before they can be deleted
+
+            if (binary != null) binary.writeAccounts(seq, snapshot, balances);
+            else writeTextSnapshot(seq, snapshot, balances);
+            SNAPSHOT_BYTES.add(Files.size(binary != null ? baseDir.resolve(BinaryStore.ACCOUNTS_FILE) : accountsFile));
+
+            for (Path journal : listJournals()) {
+                if (journalStart(journal) <= seq) Files.deleteIfExists(journal);
+            }
+            writeStatements();
+        }
+        PERSIST.recordSince(start);
+    }
+
+    // Appends a line for every statement that changed since the last call; once the file holds
+    // more than twice as many lines as there are statements it is rewritten with one line each.
+    // A line records how many of the account's ledger records it covers, so it needs no common
+    // cut with the other lines or with the balance snapshot.
+    private void writeStatements() throws IOException {
+        synchronized (compactionLock) {
+            if (dirtyStatements.isEmpty()) return;
+            long start = System.nanoTime();
+            Path file = baseDir.resolve(STATEMENTS_FILE);
+            boolean rewrite = statementLines + dirtyStatements.size() > 2L * statements.size() + 1024;
+            Path target = rewrite ? file.resolveSibling(STATEMENTS_FILE + ".tmp") : file;
+            long lines = rewrite ? 0 : statementLines;
+            try (FileOutputStream out = new FileOutputStream(target.toFile(), !rewrite);
+                 BufferedWriter w = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8))) {
+                AccountStatement st;
+                while ((st = dirtyStatements.poll()) != null) {
+                    String line = st.takeIfDirty();
+                    if (line == null || rewrite) continue;
+                    w.write(line);
+                    w.newLine();
+                    lines++;
+                }
+                if (rewrite) {
+                    for (AccountStatement all : statements.values()) {
+                        w.write(all.toStorageString());
+                        w.newLine();
+                        lines++;
+                    }
+                }
+                w.flush();
+                out.getFD().sync();
+            }
+            if (rewrite) Files.move(target, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            statementLines = lines;
+            PERSIST_STATEMENTS.recordSince(start);
+        }
+    }
+
+    private void writeTextSnapshot(long seq, List<Account> snapshot, long[] balances) throws IOException {
+        Path tmp = accountsFile.resolveSibling(accountsFile.getFileName() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp.toFile());
+             BufferedWriter w = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8))) {
+            w.write(SNAPSHOT_HEADER + "|" + seq);
+            w.newLine();
+            for (int i = 0; i < snapshot.size(); i++) {
+                Account a = snapshot.get(i);
+                w.write(String.join("|", a.getAccountId(), a.getOwnerUsername(), Money.format(balances[i])));
+                w.newLine();
+            }
+            w.flush();
+            out.getFD().sync();
+        }
+        Files.move(tmp, accountsFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public void close() throws IOException {
+        compactor.shutdownNow();
+        if (journalRecordsSinceSnapshot.get() > 0) persistAccounts();
+        else writeStatements();
+        journalWriter.close();
+        usersWriter.close();
+        idempotencyWriter.close();
+        if (transactionsWriter != null) transactionsWriter.close();
+        if (ledger != null) ledger.close();
+        if (binary != null) binary.close();
+    }
+
+    private void compactQuietly() {
+        if (journalRecordsSinceSnapshot.get() == 0) return;
+        try {
+            persistAccounts();
+        } catch (IOException e) {
+            System.err.println("Snapshot failed: " + e.getMessage());
+        }
+    }
+
+    // Read side of snapshotLock for a balance change. Only waits that queue behind a snapshot
+    // (or a writer about to take one) are timed, so the common path stays a plain lock().
+    private void lockForUpdate() {
+        if (!Metrics.ENABLED || !snapshotLock.isWriteLocked() && !snapshotLock.hasQueuedThreads()) {
+            snapshotLock.readLock().lock();
+            return;
+        }
+        LOCK_CONTENDED.increment();
+        long start = System.nanoTime();
+        snapshotLock.readLock().lock();
+        LOCK_WAIT.recordSince(start);
+    }
+
+    // journal: seq|OPEN|accountId|ownerUsername|balance, seq|DELTA|accountId|amount
+    // or seq|TRANSFER|fromAccountId|toAccountId|amount
+    // Callers hold the read side of snapshotLock, so the record lands in the generation its seq belongs to,
+    // and the balance versions the change made are stamped with that seq before any snapshot can open.
+    private CompletableFuture<Void> appendJournal(String record, Account.Version... made) {
+        long seq = journalSeq.incrementAndGet();
+        for (Account.Version v : made) v.seq = seq;
+        journalRecordsSinceSnapshot.incrementAndGet();
+        return journalWriter.append(seq + "|" + record);
+    }
+
+    // A change undone before it was journaled (a transfer whose credit would overflow) gets a
+    // sequence of its own, so neither version shows in a snapshot opened before it. Replay does
+    // not need the sequences to be dense.
+    private void stampUndone(Account.Version done, Account.Version undone) {
+        long seq = journalSeq.incrementAndGet();
+        done.seq = seq;
+        undone.seq = seq;
+    }
+
+    private long replayJournalLine(String line, long snapshotSeq) {
+        String[] p = line.split("\\|", -1);
+        long seq;
+        try {
+            seq = Long.parseLong(p[0]);
+        } catch (NumberFormatException ex) {
+            return 0; // torn write at the tail of the journal
+        }
+        if (seq <= snapshotSeq) return seq;
+        if (p[1].equals("OPEN") && p.length == 5) {
+            if (!accounts.containsKey(p[2])) putAccount(new Account(p[2], p[3], Money.parseCents(p[4])));
+        } else if (p[1].equals("DELTA") && p.length == 4) {
+            Account a = accounts.get(p[2]);
+            if (a != null) a.applyDelta(Money.parseCents(p[3]), Account.KEEP_NONE).seq = seq;
+        } else if (p[1].equals("TRANSFER") && p.length == 5) {
+            Account from = accounts.get(p[2]);
+            Account to = accounts.get(p[3]);
+            long cents = Money.parseCents(p[4]);
+            if (from != null) from.applyDelta(-cents, Account.KEEP_NONE).seq = seq;
+            if (to != null) to.applyDelta(cents, Account.KEEP_NONE).seq = seq;
+        }
+        return seq;
+    }
+
+    private List<Path> listJournals() throws IOException {
+        List<Path> out = new ArrayList<>();
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(baseDir, JOURNAL_PREFIX + "*" + JOURNAL_SUFFIX)) {
+            for (Path p : ds) out.add(p);
+        }
+        out.sort(Comparator.comparingLong(DataStore::journalStart));
+        return out;
+    }
+
+    private static String journalName(long startSeq) {
+        return String.format("%s%020d%s", JOURNAL_PREFIX, startSeq, JOURNAL_SUFFIX);
+    }
+
+    private static long journalStart(Path journal) {
+        String name = journal.getFileName().toString();
+        return Long.parseLong(name.substring(JOURNAL_PREFIX.length(), name.length() - JOURNAL_SUFFIX.length()));
+    }
+
+    // Idempotency
+    // idempotency.log: accountId|key|op|amountCents|txId|millis, txId "-" for a declined request.
+    // Keys are scoped by account, so the same key on another account is another request.
+    // Replays the log into the dedupe cache and rewrites it with only the keys still live
+    // (within the TTL and the size bound), so the log stays about as large as the cache. Lines
+    // of the older key|txId|millis form have no account to scope them by and are dropped.
+    private Path loadIdempotencyLog() throws IOException {
+        Path log = baseDir.resolve(IDEMPOTENCY_FILE);
+        if (!Files.exists(log)) return Files.createFile(log);
+        long now = System.currentTimeMillis();
+        try (BufferedReader r = Files.newBufferedReader(log, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = r.readLine()) != null) {
+                String[] p = line.split("\\|", -1);
+                if (p.length != 6) continue; // torn tail or unscoped
+                DedupeCache.Entry e;
+                try {
+                    e = new DedupeCache.Entry(scopedKey(p[0], p[1]), fingerprint(p[2], Long.parseLong(p[3])), Long.parseLong(p[5]));
+                } catch (NumberFormatException ex) {
+                    continue;
+                }
+                if (dedupe.putIfAbsent(e, e.millis) == null) dedupe.complete(e, p[4].equals("-") ? null : p[4]);
+            }
+        }
+        Path tmp = log.resolveSibling(IDEMPOTENCY_FILE + ".tmp");
+        try (BufferedReader r = Files.newBufferedReader(log, StandardCharsets.UTF_8);
+             FileOutputStream out = new FileOutputStream(tmp.toFile());
+             BufferedWriter w = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = r.readLine()) != null) {
+                String[] p = line.split("\\|", -1);
+                if (p.length != 6) continue;
+                DedupeCache.Entry e = dedupe.get(scopedKey(p[0], p[1]), now);
+                if (e != null && Long.toString(e.millis).equals(p[5])) {
+                    w.write(line);
+                    w.newLine();
+                }
+            }
+            w.flush();
+            out.getFD().sync();
+        }
+        Files.move(tmp, log, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return log;
+    }
+
+    private static String scopedKey(String accountId, String key) {
+        return accountId + "|" + key;
+    }
+
+    private static String fingerprint(String op, long cents) {
+        return op + "|" + cents;
+    }
+
+    // Deposit plus its DEPOSIT ledger record under a client idempotency key. A key already used
+    // on the account within the TTL applies nothing and completes with the first request's
+    // outcome, once it is known; reused for a different request it throws
+    // IdempotencyConflictException.
+    public CompletableFuture<String> deposit(Account account, long cents, String idempotencyKey) {
+        checkIdempotencyKey(idempotencyKey);
+        long now = System.currentTimeMillis();
+        DedupeCache.Entry mine = new DedupeCache.Entry(scopedKey(account.getAccountId(), idempotencyKey), fingerprint("DEPOSIT", cents), now);
+        DedupeCache.Entry prior = dedupe.putIfAbsent(mine, now);
+        if (prior != null) return replay(prior, mine, idempotencyKey);
+        String txId = TxIdGenerator.next();
+        CompletableFuture<Void> balance;
+        try {
+            balance = deposit(account, cents);
+        } catch (RuntimeException e) {
+            dedupe.fail(mine, e);
+            throw e;
+        }
+        CompletableFuture<Void> recorded = addTransaction(TransactionRecord.create(txId, account.getAccountId(), "DEPOSIT", cents));
+        return settle(mine, CompletableFuture.allOf(balance, recorded, logKey(account, idempotencyKey, "DEPOSIT", cents, txId, now)), txId);
+    }
+
+    // Like deposit; completes with null when funds are insufficient. The key then stays claimed
+    // by the declined request, so a retry with it is declined too rather than applied later.
+    public CompletableFuture<String> withdraw(Account account, long cents, String idempotencyKey) {
+        checkIdempotencyKey(idempotencyKey);
+        long now = System.currentTimeMillis();
+        DedupeCache.Entry mine = new DedupeCache.Entry(scopedKey(account.getAccountId(), idempotencyKey), fingerprint("WITHDRAW", cents), now);
+        DedupeCache.Entry prior = dedupe.putIfAbsent(mine, now);
+        if (prior != null) return replay(prior, mine, idempotencyKey);
+        String txId = TxIdGenerator.next();
+        CompletableFuture<Boolean> balance;
+        try {
+            balance = withdraw(account, cents);
+        } catch (RuntimeException e) {
+            dedupe.fail(mine, e);
+            throw e;
+        }
+        if (balance.isDone() && !balance.join()) {
+            return settle(mine, logKey(account, idempotencyKey, "WITHDRAW", cents, "-", now), null);
+        }
+        CompletableFuture<Void> recorded = addTransaction(TransactionRecord.create(txId, account.getAccountId(), "WITHDRAW", cents));
+        return settle(mine, CompletableFuture.allOf(balance, recorded, logKey(account, idempotencyKey, "WITHDRAW", cents, txId, now)), txId);
+    }
+
+    private static CompletableFuture<String> replay(DedupeCache.Entry prior, DedupeCache.Entry request, String idempotencyKey) {
+        if (!prior.getFingerprint().equals(request.getFingerprint())) {
+            throw new IdempotencyConflictException("Idempotency key " + idempotencyKey + " was already used for a different request");
+        }
+        return prior.getOutcome();
+    }
+
+    private CompletableFuture<Void> logKey(Account account, String key, String op, long cents, String txId, long now) {
+        return idempotencyWriter.append(String.join("|", account.getAccountId(), key, op, Long.toString(cents), txId, Long.toString(now)));
+    }
+
+    // Duplicates see the outcome once the request is durable, as its own caller does. The
+    // change is applied by then, so a failed write settles the claim with the failure but
+    // keeps the key, and a retry is not applied a second time.
+    private CompletableFuture<String> settle(DedupeCache.Entry mine, CompletableFuture<Void> durable, String txId) {
+        return durable.handle((v, e) -> {
+            if (e != null) {
+                mine.getOutcome().completeExceptionally(e);
+                throw e instanceof CompletionException ? (CompletionException) e : new CompletionException(e);
+            }
+            dedupe.complete(mine, txId);
+            return txId;
+        });
+    }
+
+    private static void checkIdempotencyKey(String key) {
+        if (key == null || key.isEmpty() || key.length() > MAX_IDEMPOTENCY_KEY_LENGTH) {
+            throw new IllegalArgumentException("Idempotency key must be 1-" + MAX_IDEMPOTENCY_KEY_LENGTH + " characters");
+        }
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            if (c <= ' ' || c == '|' || c > '~') throw new IllegalArgumentException("Idempotency key must be printable ASCII without '|'");
+        }
+    }
+
+    // Transactions
+    public CompletableFuture<Void> addTransaction(TransactionRecord tr) {
+        return appendLedger(List.of(tr));
+    }
+
+    // Records are folded into their statements and queued for the ledger under one monitor, so
+    // every account's statement covers a prefix of its records in ledger order.
+    private CompletableFuture<Void> appendLedger(List<TransactionRecord> records) {
+        List<String> lines = null;
+        if (ledger == null && binary == null) {
+            lines = new ArrayList<>(records.size());
+            for (TransactionRecord t : records) lines.add(t.toStorageString());
+        }
+        synchronized (statements) {
+            for (TransactionRecord t : records) {
+                AccountStatement st = statements.computeIfAbsent(t.getAccountId(), AccountStatement::new);
+                if (st.add(t)) dirtyStatements.add(st);
+            }
+            if (ledger != null) return ledger.append(records);
+            for (TransactionRecord t : records) indexTransaction(t);
+            if (binary != null) return binary.appendTransactions(records);
+            return transactionsWriter.append(lines);
+        }
+    }
+
+    // Totals for an account's whole ledger, by day and by month; a copy, so it can be read at leisure.
+    public AccountStatement getStatement(String accountId) {
+        AccountStatement s = statements.get(accountId);
+        return s != null ? s.copy() : new AccountStatement(accountId);
+    }
+
+    // Balance at epochMillis, rebuilt from the ledger rather than summed from its start. The
+    // opening balance plus the statement's month and day buckets act as checkpoints, giving the
+    // balance before that UTC day; only the day's own records are replayed. They are read by
+    // position, from a window around where the day sits in the account's history (records
+    // arrive close to time order), widened until it holds all of them. Only the buckets are
+    // read under the append monitor: the window is read outside it, its positions shifted by
+    // the records appended since, and read again if an append lands meanwhile.
+    public long getBalanceAsOf(String accountId, long epochMillis) {
+        epochMillis = Math.max(AS_OF_MIN, Math.min(AS_OF_MAX, epochMillis)); // years the day keys can hold
+        long epochDay = Math.floorDiv(epochMillis, DAY_MILLIS);
+        LocalDate day = LocalDate.ofEpochDay(epochDay);
+        AccountStatement st = statements.get(accountId);
+        if (st == null) return 0;
+        AccountStatement.Totals before;
+        long onDay, total, opening;
+        synchronized (statements) {
+            before = st.before(day);
+            onDay = st.day(day).count;
+            total = st.records();
+            opening = st.opening();
+        }
+        if (onDay == 0) return opening + before.net();
+        for (long slack = 16; ; ) {
+            long from = Math.max(0, before.count - slack); // positions counted from the oldest record
+            long to = Math.min(total, before.count + onDay + slack);
+            long appended = recordsOf(st) - total;
+            List<TransactionRecord> window = getTransactionsForAccount(accountId, (int) (appended + total - to), (int) (to - from));
+            if (recordsOf(st) - total != appended) continue; // the positions moved under the read
+            long found = 0, net = 0;
+            for (TransactionRecord t : window) {
+                if (Math.floorDiv(t.getEpochMillis(), DAY_MILLIS) != epochDay) continue;
+                found++;
+                if (t.getEpochMillis() <= epochMillis) net += AccountStatement.netCents(t);
+            }
+            if (found == onDay || from == 0 && to == total) return opening + before.net() + net;
+            slack *= 2;
+        }
+    }
+
+    // The records st covers, which are then all in the ledger's index too (see appendLedger).
+    private long recordsOf(AccountStatement st) {
+        synchronized (statements) {
+            return st.records();
+        }
+    }
+
+    // Full history for an account, newest first.
+    public List<TransactionRecord> getTransactionsForAccount(String accountId) {
+        return getTransactionsForAccount(accountId, 0, Integer.MAX_VALUE);
+    }
+
+    // One page of an account's history, newest first; offset 0 is the latest transaction.
+    public List<TransactionRecord> getTransactionsForAccount(String accountId, int offset, int limit) {
+        if (offset < 0 || limit < 0) throw new IllegalArgumentException("offset and limit must be >= 0");
+        if (ledger != null) return ledger.stream(accountId, offset).limit(limit).collect(Collectors.toList());
+        List<TransactionRecord> history = transactionsByAccount.get(accountId);
+        if (history == null) return new ArrayList<>();
+        synchronized (history) {
+            int end = history.size() - offset; // exclusive, counting back from the newest
+            if (end <= 0) return new ArrayList<>();
+            int start = (int) Math.max(0L, (long) end - limit);
+            List<TransactionRecord> out = new ArrayList<>(end - start);
+            for (int i = end - 1; i >= start; i--) out.add(history.get(i));
+            return out;
+        }
+    }
+
+    // A page of the account's records with fromMillis <= time <= toMillis, newest first. The
+    // on-disk ledger skips segments outside the range; the in-heap history is scanned.
+    public List<TransactionRecord> getTransactionsBetween(String accountId, long fromMillis, long toMillis, int offset, int limit) {
+        if (offset < 0 || limit < 0) throw new IllegalArgumentException("offset and limit must be >= 0");
+        if (ledger != null) return ledger.stream(accountId, fromMillis, toMillis).skip(offset).limit(limit).collect(Collectors.toList());
+        List<TransactionRecord> out = new ArrayList<>();
+        List<TransactionRecord> history = transactionsByAccount.get(accountId);
+        if (history == null) return out;
+        synchronized (history) {
+            for (int i = history.size() - 1; i >= 0 && out.size() < limit; i--) {
+                TransactionRecord t = history.get(i);
+                if (t.getEpochMillis() < fromMillis || t.getEpochMillis() > toMillis) continue;
+                if (offset > 0) offset--;
+                else out.add(t);
+            }
+        }
+        return out;
+    }
+
+    // Newest first. With the on-disk ledger records are read as the stream is consumed;
+    // otherwise the stream runs over a copy of the in-heap history.
+    public Stream<TransactionRecord> streamTransactionsForAccount(String accountId) {
+        if (ledger != null) return ledger.stream(accountId);
+        return getTransactionsForAccount(accountId).stream();
+    }
+
+    public int countTransactionsForAccount(String accountId) {
+        if (ledger != null) return ledger.count(accountId);
+        List<TransactionRecord> history = transactionsByAccount.get(accountId);
+        if (history == null) return 0;
+        synchronized (history) {
+            return history.size();
+        }
+    }
+
+    private void indexTransaction(TransactionRecord tr) {
+        List<TransactionRecord> history = transactionsByAccount.computeIfAbsent(tr.getAccountId(), k -> new ArrayList<>());
+        synchronized (history) {
+            history.add(tr);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package securebank;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Remembers what the request that claimed an idempotency key asked for and what came of it,
+// for at most ttlMillis and at most maxKeys keys (oldest evicted first). Lookups and claims are
+// a ConcurrentHashMap operation; eviction trails behind in insertion order from a lock-free
+// queue. Released claims stay queued until they reach its head or, once they are half of it,
+// a sweep drops them all, so the queue holds at most about twice maxKeys entries.
+public class DedupeCache {
+    // A claim. The outcome completes with the txId, with null when the request was declined
+    // (e.g. insufficient funds), or exceptionally when it failed before applying anything;
+    // until then duplicates of the request wait on it.
+    public static final class Entry {
+        final String key;
+        final String fingerprint;
+        final long millis;
+        private final CompletableFuture<String> outcome = new CompletableFuture<>();
+
+        public Entry(String key, String fingerprint, long millis) {
+            this.key = key;
+            this.fingerprint = fingerprint;
+            this.millis = millis;
+        }
+
+        public String getFingerprint() { return fingerprint; }
+        public CompletableFuture<String> getOutcome() { return outcome; }
+    }
+
+    private final long ttlMillis;
+    private final int maxKeys;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Queue<Entry> order = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+
+    public DedupeCache(long ttlMillis, int maxKeys) {
+        this.ttlMillis = ttlMillis;
+        this.maxKeys = maxKeys;
+    }
+
+    // Claims entry.key for entry. Returns null when the claim succeeded, or the entry that
+    // already holds the key when it was claimed within the TTL.
+    public Entry putIfAbsent(Entry entry, long nowMillis) {
+        while (true) {
+            Entry prior = entries.putIfAbsent(entry.key, entry);
+            if (prior == null) break;
+            if (nowMillis - prior.millis < ttlMillis) return prior;
+            entries.remove(entry.key, prior); // expired but not evicted yet
+        }
+        order.add(entry);
+        queued.incrementAndGet();
+        evict(nowMillis);
+        return null;
+    }
+
+    // Settles a claim whose request went through or was declined; the key stays claimed.
+    public void complete(Entry entry, String txId) {
+        entry.outcome.complete(txId);
+    }
+
+    // Gives a claim back when its request failed before applying anything: the duplicates
+    // already waiting get the failure, later ones run the request again.
+    public void fail(Entry entry, Throwable cause) {
+        entries.remove(entry.key, entry);
+        entry.outcome.completeExceptionally(cause);
+    }
+
+    public Entry get(String key, long nowMillis) {
+        Entry e = entries.get(key);
+        return e != null && nowMillis - e.millis < ttlMillis ? e : null;
+    }
+
+    public int size() { return entries.size(); }
+
+    int queuedCount() { return queued.get(); }
+
+    // One thread evicts at a time, so an entry is dequeued and counted off once.
+    private synchronized void evict(long nowMillis) {
+        if (queued.get() > maxKeys && queued.get() > 2 * entries.size()) {
+            for (Iterator<Entry> it = order.iterator(); it.hasNext(); ) {
+                Entry e = it.next();
+                if (entries.get(e.key) != e) {
+                    it.remove();
+                    queued.decrementAndGet();
+                }
+            }
+        }
+        Entry head;
+        while ((head = order.peek()) != null
+                && (entries.size() > maxKeys || nowMillis - head.millis >= ttlMillis || entries.get(head.key) != head)) {
+            order.poll();
+            queued.decrementAndGet();
+            entries.remove(head.key, head);
+        }
+    }
+}
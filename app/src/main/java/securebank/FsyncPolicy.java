@@ -0,0 +1,46 @@
+package securebank;
+
+// When a JournalWriter forces appended records to disk.
+public final class FsyncPolicy {
+    public enum Mode { EVERY_RECORD, INTERVAL, OS }
+
+    private final Mode mode;
+    private final long intervalMillis;
+
+    private FsyncPolicy(Mode mode, long intervalMillis) {
+        this.mode = mode;
+        this.intervalMillis = intervalMillis;
+    }
+
+    // every record is on disk before its future completes; concurrent appenders share one force()
+    public static FsyncPolicy everyRecord() { return new FsyncPolicy(Mode.EVERY_RECORD, 0); }
+    // force at most once per interval; futures complete at the force that covers them
+    public static FsyncPolicy everyMillis(long millis) {
+        if (millis <= 0) throw new IllegalArgumentException("interval must be > 0");
+        return new FsyncPolicy(Mode.INTERVAL, millis);
+    }
+    // never force; futures complete once the OS has the bytes
+    public static FsyncPolicy osManaged() { return new FsyncPolicy(Mode.OS, 0); }
+
+    public Mode getMode() { return mode; }
+    public long getIntervalMillis() { return intervalMillis; }
+
+    // "record", "os" or "<n>ms"
+    public static FsyncPolicy parse(String s) {
+        if (s == null || s.trim().isEmpty()) return everyRecord();
+        String v = s.trim().toLowerCase();
+        if (v.equals("record")) return everyRecord();
+        if (v.equals("os")) return osManaged();
+        if (v.endsWith("ms")) return everyMillis(Long.parseLong(v.substring(0, v.length() - 2)));
+        throw new IllegalArgumentException("Unknown fsync policy: " + s);
+    }
+
+    public static FsyncPolicy fromSystemProperty() {
+        return parse(System.getProperty("bank.fsync"));
+    }
+
+    @Override
+    public String toString() {
+        return mode == Mode.INTERVAL ? intervalMillis + "ms" : mode.name().toLowerCase();
+    }
+}
@@ -0,0 +1,11 @@
+package securebank;
+
+// Thrown when an idempotency key comes back with a different request than the one it was
+// first used for (another operation or amount on the same account); nothing is applied.
+public class IdempotencyConflictException extends IllegalStateException {
+    private static final long serialVersionUID = 1L;
+
+    public IdempotencyConflictException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,281 @@
+package securebank;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Long-lived appender for one file with group commit: whatever callers have queued
+// while the previous batch was being written goes out as one write plus one force().
+public class JournalWriter implements Closeable {
+    private static final byte[] NEWLINE = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+    private static final Metrics.Histogram COMMIT = Metrics.timer("journal.commit"); // enqueue to durable
+    private static final Metrics.Histogram WRITE = Metrics.timer("journal.write");
+    private static final Metrics.Histogram FORCE = Metrics.timer("journal.force");
+    private static final Metrics.Histogram BATCH = Metrics.histogram("journal.batchRecords");
+    private static final LongAdder BYTES = Metrics.counter("journal.bytes");
+
+    private static final class Pending {
+        final ByteBuffer[] data;
+        final Path rollTo; // non-null for a roll marker
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+        Pending(ByteBuffer[] data, Path rollTo) {
+            this.data = data;
+            this.rollTo = rollTo;
+        }
+    }
+
+    private final FsyncPolicy policy;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private ArrayDeque<Pending> queue = new ArrayDeque<>();
+    private boolean closed;
+    private final Thread thread;
+
+    // owned by the writer thread
+    private Path file;
+    private FileChannel channel;
+    private final List<CompletableFuture<Void>> unforced = new ArrayList<>();
+    private long lastForce = System.nanoTime();
+
+    public JournalWriter(Path file, FsyncPolicy policy) throws IOException {
+        this.policy = policy;
+        this.file = file;
+        this.channel = open(file);
+        thread = new Thread(this::run, "journal-writer-" + file.getFileName());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public Path getFile() { return file; }
+
+    public CompletableFuture<Void> append(String line) {
+        return append(List.of(line));
+    }
+
+    // All lines land in the file contiguously, in one write.
+    public CompletableFuture<Void> append(List<String> lines) {
+        ByteBuffer[] data = new ByteBuffer[lines.size() * 2];
+        for (int i = 0; i < lines.size(); i++) {
+            data[2 * i] = ByteBuffer.wrap(lines.get(i).getBytes(StandardCharsets.UTF_8));
+            data[2 * i + 1] = ByteBuffer.wrap(NEWLINE);
+        }
+        return enqueue(new Pending(data, null));
+    }
+
+    public CompletableFuture<Void> appendBytes(byte[] record) {
+        return enqueue(new Pending(new ByteBuffer[]{ByteBuffer.wrap(record)}, null));
+    }
+
+    // Records queued before the roll stay in the current file; later ones go to newFile.
+    // Completes once the old file has been forced and closed. If newFile cannot be opened the
+    // roll fails and records keep going to the current file.
+    public CompletableFuture<Void> roll(Path newFile) {
+        return enqueue(new Pending(new ByteBuffer[0], newFile));
+    }
+
+    private CompletableFuture<Void> enqueue(Pending p) {
+        if (Metrics.ENABLED && p.rollTo == null) {
+            long start = System.nanoTime();
+            p.done.whenComplete((v, e) -> COMMIT.recordSince(start));
+        }
+        lock.lock();
+        try {
+            if (closed) {
+                p.done.completeExceptionally(new IOException("Journal closed: " + file));
+                return p.done;
+            }
+            queue.add(p);
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+        return p.done;
+    }
+
+    private void run() {
+        while (true) {
+            ArrayDeque<Pending> batch;
+            lock.lock();
+            try {
+                while (queue.isEmpty() && !closed) {
+                    if (unforced.isEmpty()) {
+                        notEmpty.awaitUninterruptibly();
+                    } else {
+                        long waitNanos = TimeUnit.MILLISECONDS.toNanos(policy.getIntervalMillis()) - (System.nanoTime() - lastForce);
+                        if (waitNanos <= 0) break;
+                        try {
+                            notEmpty.awaitNanos(waitNanos);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                }
+                if (queue.isEmpty() && closed) {
+                    forceQuietly();
+                    closeChannel();
+                    return;
+                }
+                batch = queue;
+                queue = new ArrayDeque<>();
+            } finally {
+                lock.unlock();
+            }
+            try {
+                writeBatch(batch);
+            } catch (RuntimeException e) {
+                // whatever the batch had not settled fails; the writer carries on with the next one
+                failUnsettled(batch, e);
+            } catch (Error e) {
+                // the thread is going down: stop taking records and fail every one still waiting
+                lock.lock();
+                try {
+                    closed = true;
+                    batch.addAll(queue);
+                    queue.clear();
+                } finally {
+                    lock.unlock();
+                }
+                failUnsettled(batch, e);
+                throw e;
+            }
+        }
+    }
+
+    private void failUnsettled(ArrayDeque<Pending> batch, Throwable e) {
+        for (Pending p : batch) p.done.completeExceptionally(e); // no-op for the ones already settled
+        for (CompletableFuture<Void> f : unforced) f.completeExceptionally(e);
+        unforced.clear();
+    }
+
+    private void writeBatch(ArrayDeque<Pending> batch) {
+        BATCH.record(batch.size());
+        List<ByteBuffer> buffers = new ArrayList<>();
+        List<CompletableFuture<Void>> written = new ArrayList<>();
+        for (Pending p : batch) {
+            if (p.rollTo == null) {
+                for (ByteBuffer b : p.data) buffers.add(b);
+                written.add(p.done);
+                continue;
+            }
+            // a roll: everything before it goes to the old file, which is forced, and only once
+            // the new file is open is the old one closed
+            if (!flush(buffers, written, true)) {
+                p.done.completeExceptionally(new IOException("Journal write failed before roll: " + file));
+                continue;
+            }
+            FileChannel next;
+            try {
+                next = open(p.rollTo);
+            } catch (IOException e) {
+                p.done.completeExceptionally(e);
+                continue;
+            }
+            closeChannel();
+            file = p.rollTo;
+            channel = next;
+            p.done.complete(null);
+        }
+        flush(buffers, written, false);
+    }
+
+    // Writes the gathered buffers and completes their futures according to the fsync policy.
+    private boolean flush(List<ByteBuffer> buffers, List<CompletableFuture<Void>> written, boolean forceNow) {
+        try {
+            ByteBuffer[] arr = buffers.toArray(new ByteBuffer[0]);
+            long remaining = 0;
+            for (ByteBuffer b : arr) remaining += b.remaining();
+            BYTES.add(remaining);
+            long start = System.nanoTime();
+            while (remaining > 0) remaining -= channel.write(arr);
+            WRITE.recordSince(start);
+            switch (policy.getMode()) {
+                case EVERY_RECORD:
+                    if (!written.isEmpty() || forceNow) force();
+                    completeAll(written);
+                    break;
+                case INTERVAL:
+                    unforced.addAll(written);
+                    if (forceNow || System.nanoTime() - lastForce >= TimeUnit.MILLISECONDS.toNanos(policy.getIntervalMillis())) force();
+                    break;
+                case OS:
+                    if (forceNow) force();
+                    completeAll(written);
+                    break;
+            }
+            return true;
+        } catch (IOException e) {
+            for (CompletableFuture<Void> f : written) f.completeExceptionally(e);
+            for (CompletableFuture<Void> f : unforced) f.completeExceptionally(e);
+            unforced.clear();
+            return false;
+        } finally {
+            buffers.clear();
+            written.clear();
+        }
+    }
+
+    private void force() throws IOException {
+        long start = System.nanoTime();
+        channel.force(false);
+        lastForce = System.nanoTime();
+        FORCE.record(lastForce - start);
+        completeAll(unforced);
+    }
+
+    private void forceQuietly() {
+        try {
+            force();
+        } catch (IOException e) {
+            for (CompletableFuture<Void> f : unforced) f.completeExceptionally(e);
+            unforced.clear();
+        }
+    }
+
+    private static void completeAll(List<CompletableFuture<Void>> futures) {
+        for (CompletableFuture<Void> f : futures) f.complete(null);
+        futures.clear();
+    }
+
+    private void closeChannel() {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // nothing left to lose: every queued record has been written and forced
+        }
+    }
+
+    // Overridden by tests to stand in for a failing file system.
+    FileChannel open(Path file) throws IOException {
+        return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    // Drains everything already queued, forces it to disk and stops the writer thread.
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (closed) return;
+            closed = true;
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
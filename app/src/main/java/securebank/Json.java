@@ -0,0 +1,109 @@
+package securebank;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Just enough JSON for the HTTP API: request bodies are flat objects of strings and numbers,
+// responses are assembled with StringBuilder and quote().
+public final class Json {
+    private Json() {}
+
+    // Parses {"k":"v","n":12.5,...} into raw string values (numbers keep their text, so amounts
+    // go through the same decimal parsing as the console). Nested values are rejected.
+    public static Map<String, String> parseObject(String s) {
+        Map<String, String> out = new HashMap<>();
+        int[] pos = {skip(s, 0)};
+        expect(s, pos, '{');
+        if (peek(s, pos) == '}') {
+            pos[0]++;
+            return out;
+        }
+        while (true) {
+            String key = readString(s, pos);
+            expect(s, pos, ':');
+            char c = peek(s, pos);
+            String value;
+            if (c == '"') {
+                value = readString(s, pos);
+            } else {
+                int start = pos[0];
+                while (pos[0] < s.length() && ",} \t\r\n".indexOf(s.charAt(pos[0])) < 0) pos[0]++;
+                value = s.substring(start, pos[0]);
+                if (value.isEmpty() || value.startsWith("{") || value.startsWith("[")) throw new IllegalArgumentException("Unsupported value for " + key);
+                if (value.equals("null")) value = null;
+            }
+            out.put(key, value);
+            c = peek(s, pos);
+            pos[0]++;
+            if (c == '}') return out;
+            if (c != ',') throw new IllegalArgumentException("Expected , or } at " + (pos[0] - 1));
+        }
+    }
+
+    public static String quote(String s) {
+        if (s == null) return "null";
+        StringBuilder b = new StringBuilder(s.length() + 2).append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"': b.append("\\\""); break;
+                case '\\': b.append("\\\\"); break;
+                case '\n': b.append("\\n"); break;
+                case '\r': b.append("\\r"); break;
+                case '\t': b.append("\\t"); break;
+                default:
+                    if (c < 0x20) b.append(String.format("\\u%04x", (int) c));
+                    else b.append(c);
+            }
+        }
+        return b.append('"').toString();
+    }
+
+    private static String readString(String s, int[] pos) {
+        expect(s, pos, '"');
+        StringBuilder b = new StringBuilder();
+        int i = pos[0];
+        while (true) {
+            if (i >= s.length()) throw new IllegalArgumentException("Unterminated string");
+            char c = s.charAt(i++);
+            if (c == '"') break;
+            if (c != '\\') {
+                b.append(c);
+                continue;
+            }
+            if (i >= s.length()) throw new IllegalArgumentException("Unterminated string");
+            char e = s.charAt(i++);
+            switch (e) {
+                case 'n': b.append('\n'); break;
+                case 'r': b.append('\r'); break;
+                case 't': b.append('\t'); break;
+                case 'b': b.append('\b'); break;
+                case 'f': b.append('\f'); break;
+                case 'u':
+                    if (i + 4 > s.length()) throw new IllegalArgumentException("Bad \\u escape");
+                    b.append((char) Integer.parseInt(s.substring(i, i + 4), 16));
+                    i += 4;
+                    break;
+                default: b.append(e); // \" \\ \/
+            }
+        }
+        pos[0] = skip(s, i);
+        return b.toString();
+    }
+
+    private static void expect(String s, int[] pos, char c) {
+        if (peek(s, pos) != c) throw new IllegalArgumentException("Expected " + c + " at " + pos[0]);
+        pos[0] = skip(s, pos[0] + 1);
+    }
+
+    private static char peek(String s, int[] pos) {
+        pos[0] = skip(s, pos[0]);
+        if (pos[0] >= s.length()) throw new IllegalArgumentException("Unexpected end of JSON");
+        return s.charAt(pos[0]);
+    }
+
+    private static int skip(String s, int i) {
+        while (i < s.length() && Character.isWhitespace(s.charAt(i))) i++;
+        return i;
+    }
+}
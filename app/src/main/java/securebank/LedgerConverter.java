@@ -0,0 +1,94 @@
+package securebank;
+
+import java.io.BufferedReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+// One-shot conversion of a text data directory (accounts.txt, transactions.txt) to the
+// fixed-width BinaryStore format. The binary files are built in a scratch directory and
+// moved in at the end, transactions.bin last, so an interrupted run leaves the text store
+// in charge. The text files are kept as *.txt.bak.
+//
+//   java -cp app/target/securebank.jar securebank.LedgerConverter [dataDir]
+public class LedgerConverter {
+    private static final int BATCH = 8192;
+
+    public static void main(String[] args) throws Exception {
+        Path dir = Paths.get(args.length > 0 ? args[0] : "data");
+        if (BinaryStore.isPresent(dir)) {
+            System.out.println(dir + " already uses binary storage.");
+            return;
+        }
+        long start = System.nanoTime();
+
+        // Opening the text store folds any balance journal into accounts.txt.
+        new DataStore(dir.toString()).close();
+
+        Path accountsTxt = dir.resolve("accounts.txt");
+        Path transactionsTxt = dir.resolve("transactions.txt");
+        long snapshotSeq = 0;
+        List<Account> accounts = new ArrayList<>();
+        try (BufferedReader r = Files.newBufferedReader(accountsTxt, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = r.readLine()) != null) {
+                if (line.startsWith("#snapshot|")) {
+                    snapshotSeq = Long.parseLong(line.substring("#snapshot|".length()).trim());
+                    continue;
+                }
+                Account a = line.trim().isEmpty() ? null : Account.fromStorageString(line);
+                if (a == null) continue;
+                accounts.add(a);
+            }
+        }
+
+        Path scratch = dir.resolve("binary.tmp");
+        if (Files.exists(scratch)) {
+            try (DirectoryStream<Path> old = Files.newDirectoryStream(scratch)) {
+                for (Path p : old) Files.delete(p);
+            }
+        }
+        Files.createDirectories(scratch);
+
+        long txCount = 0;
+        try (BinaryStore store = new BinaryStore(scratch, FsyncPolicy.osManaged());
+             BufferedReader r = Files.newBufferedReader(transactionsTxt, StandardCharsets.UTF_8)) {
+            for (Account a : accounts) {
+                store.intern(a.getAccountId());
+                store.intern(a.getOwnerUsername());
+            }
+            List<TransactionRecord> batch = new ArrayList<>(BATCH);
+            CompletableFuture<Void> last = CompletableFuture.completedFuture(null);
+            String line;
+            while ((line = r.readLine()) != null) {
+                TransactionRecord t = line.trim().isEmpty() ? null : TransactionRecord.fromStorageString(line);
+                if (t == null) continue;
+                batch.add(t);
+                if (batch.size() == BATCH) {
+                    last = store.appendTransactions(batch);
+                    txCount += batch.size();
+                    batch = new ArrayList<>(BATCH);
+                }
+            }
+            if (!batch.isEmpty()) {
+                last = store.appendTransactions(batch);
+                txCount += batch.size();
+            }
+            last.join();
+            long[] balances = new long[accounts.size()];
+            for (int i = 0; i < balances.length; i++) balances[i] = accounts.get(i).getBalanceCents();
+            store.writeAccounts(snapshotSeq, accounts, balances);
+        }
+
+        for (String name : new String[]{BinaryStore.NAMES_FILE, BinaryStore.ACCOUNTS_FILE, BinaryStore.TRANSACTIONS_FILE}) {
+            Files.move(scratch.resolve(name), dir.resolve(name), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        Files.delete(scratch);
+        Files.move(accountsTxt, dir.resolve("accounts.txt.bak"), StandardCopyOption.REPLACE_EXISTING);
+        Files.move(transactionsTxt, dir.resolve("transactions.txt.bak"), StandardCopyOption.REPLACE_EXISTING);
+        System.out.printf("Converted %d accounts and %d transactions in %d ms.%n",
+                accounts.size(), txCount, (System.nanoTime() - start) / 1_000_000);
+    }
+}
@@ -0,0 +1,216 @@
+package securebank;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+// Drives a running BankServer with many concurrent clients and reports throughput and latency.
+// A few users are registered and logged in up front (each login is a full KDF run); the clients
+// then share their sessions and mix deposits, account listings and history pages.
+//
+//   java -cp app/target/securebank.jar securebank.LoadGenerator [baseUrl] [clients] [seconds] [users]
+//   java -cp app/target/securebank.jar securebank.LoadGenerator http://localhost:8080 1000 30 20
+//
+// --attack sends wrong-password logins for one user at a fixed rate, like a guessing script,
+// and reports the answers by status and the KDF runs and CPU time they cost the server (read
+// from /metrics, so run it on the server's host).
+//
+//   java -cp app/target/securebank.jar securebank.LoadGenerator --attack [baseUrl] [attemptsPerSecond] [seconds] [username]
+public class LoadGenerator {
+    private static final int MAX_IN_FLIGHT = 256;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("--attack")) {
+            attack(args.length > 1 ? args[1] : "http://localhost:8080",
+                    args.length > 2 ? Integer.parseInt(args[2]) : 10_000,
+                    args.length > 3 ? Integer.parseInt(args[3]) : 30,
+                    args.length > 4 ? args[4] : "victim");
+            return;
+        }
+        String base = args.length > 0 ? args[0] : "http://localhost:8080";
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+        int users = args.length > 3 ? Integer.parseInt(args[3]) : 20;
+        HttpClient http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10)).build();
+
+        String run = Long.toString(System.currentTimeMillis(), 36);
+        String[] tokens = new String[users];
+        String[] accountIds = new String[users];
+        for (int u = 0; u < users; u++) {
+            String login = "{\"username\":\"load-" + run + "-" + u + "\",\"password\":\"load-password\"}";
+            call(http, "POST", base + "/register", null, login, 201);
+            tokens[u] = field(call(http, "POST", base + "/login", null, login, 200), "token");
+            accountIds[u] = field(call(http, "POST", base + "/accounts", tokens[u], "", 201), "accountId");
+            call(http, "POST", base + "/accounts/" + accountIds[u] + "/deposit", tokens[u], "{\"amount\":\"1000.00\"}", 200);
+        }
+        System.out.printf("Prepared %d users; running %d clients for %ds against %s%n", users, clients, seconds, base);
+
+        long[][] latencies = new long[clients][];
+        int[] counts = new int[clients];
+        int[] errors = new int[clients];
+        CountDownLatch done = new CountDownLatch(clients);
+        ExecutorService pool = BankServer.requestExecutor();
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.SECONDS.toNanos(seconds);
+        for (int c = 0; c < clients; c++) {
+            int id = c;
+            pool.execute(() -> {
+                long[] lat = new long[1024];
+                int n = 0;
+                int u = id % users;
+                ThreadLocalRandom rnd = ThreadLocalRandom.current();
+                try {
+                    while (System.nanoTime() < deadline) {
+                        int op = rnd.nextInt(10);
+                        long t0 = System.nanoTime();
+                        try {
+                            if (op < 4) {
+                                call(http, "POST", base + "/accounts/" + accountIds[u] + "/deposit", tokens[u], "{\"amount\":\"0.01\"}", 200);
+                            } else if (op < 7) {
+                                call(http, "GET", base + "/accounts", tokens[u], null, 200);
+                            } else {
+                                call(http, "GET", base + "/accounts/" + accountIds[u] + "/transactions?limit=20", tokens[u], null, 200);
+                            }
+                        } catch (Exception e) {
+                            errors[id]++;
+                            continue;
+                        }
+                        if (n == lat.length) lat = Arrays.copyOf(lat, n * 2);
+                        lat[n++] = System.nanoTime() - t0;
+                    }
+                } finally {
+                    latencies[id] = lat;
+                    counts[id] = n;
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        long elapsed = System.nanoTime() - start;
+        pool.shutdown();
+
+        int total = 0;
+        int failed = 0;
+        for (int c = 0; c < clients; c++) {
+            total += counts[c];
+            failed += errors[c];
+        }
+        long[] all = new long[total];
+        int k = 0;
+        for (int c = 0; c < clients; c++) {
+            System.arraycopy(latencies[c], 0, all, k, counts[c]);
+            k += counts[c];
+        }
+        Arrays.sort(all);
+        System.out.printf("%d requests, %d errors in %.1fs: %.0f req/s, p50 %.2f ms, p99 %.2f ms, max %.2f ms%n",
+                total, failed, elapsed / 1e9, total / (elapsed / 1e9),
+                percentile(all, 0.50), percentile(all, 0.99), all.length == 0 ? 0.0 : all[all.length - 1] / 1e6);
+    }
+
+    private static void attack(String base, int perSecond, int seconds, String username) throws Exception {
+        HttpClient http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10)).build();
+        String register = "{\"username\":" + Json.quote(username) + ",\"password\":\"correct-horse\"}";
+        send(http, "POST", base + "/register", null, register); // 409 when it already exists
+        Map<String, Long> before = serverMetrics(http, base);
+
+        Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+        List<CompletableFuture<?>> sent = new ArrayList<>();
+        Semaphore inFlight = new Semaphore(MAX_IN_FLIGHT); // past this the rate drops rather than piling up sockets
+        long total = (long) perSecond * seconds;
+        long start = System.nanoTime();
+        for (long i = 0; i < total; i++) {
+            long due = start + i * 1_000_000_000L / perSecond;
+            long ahead = due - System.nanoTime();
+            if (ahead > 0) LockSupport.parkNanos(ahead);
+            String guess = "{\"username\":" + Json.quote(username) + ",\"password\":\"guess-" + i + "\"}";
+            HttpRequest req = HttpRequest.newBuilder(URI.create(base + "/login")).timeout(Duration.ofSeconds(30))
+                    .header("Content-Type", "application/json").POST(HttpRequest.BodyPublishers.ofString(guess)).build();
+            inFlight.acquire();
+            sent.add(http.sendAsync(req, HttpResponse.BodyHandlers.discarding()).whenComplete((r, e) -> {
+                inFlight.release();
+                statuses.computeIfAbsent(e != null ? -1 : r.statusCode(), k -> new LongAdder()).increment();
+            }));
+        }
+        for (CompletableFuture<?> f : sent) {
+            try {
+                f.join();
+            } catch (Exception e) {
+                // counted as status -1
+            }
+        }
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        Map<String, Long> after = serverMetrics(http, base);
+
+        StringBuilder counts = new StringBuilder();
+        for (Map.Entry<Integer, LongAdder> e : new TreeMap<>(statuses).entrySet()) {
+            counts.append(e.getKey() < 0 ? " failed=" : " " + e.getKey() + "=").append(e.getValue().sum());
+        }
+        long kdf = after.getOrDefault("auth.kdf", 0L) - before.getOrDefault("auth.kdf", 0L);
+        long cpu = after.getOrDefault("process.cpuMillis", 0L) - before.getOrDefault("process.cpuMillis", 0L);
+        System.out.printf("%d attempts in %.1fs (%.0f/s):%s%n", total, elapsed, total / elapsed, counts);
+        System.out.printf("server: %d KDF runs (%.1f/s), %d ms CPU (%.0f%% of one core)%n",
+                kdf, kdf / elapsed, cpu, cpu / 10.0 / elapsed);
+    }
+
+    // Counters and histogram counts from /metrics.
+    private static Map<String, Long> serverMetrics(HttpClient http, String base) throws Exception {
+        Map<String, Long> out = new TreeMap<>();
+        for (String line : send(http, "GET", base + "/metrics", null, null).body().split("\n")) {
+            String[] p = line.trim().split(" ");
+            if (p.length < 2 || line.startsWith("#")) continue;
+            String v = p[1].startsWith("count=") ? p[1].substring("count=".length()) : p[1];
+            try {
+                out.put(p[0], Long.parseLong(v));
+            } catch (NumberFormatException ignored) {
+                // not a count
+            }
+        }
+        return out;
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) return 0;
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1)] / 1e6;
+    }
+
+    // Waits out a 429 (the server throttles registrations and logins) and tries again.
+    private static String call(HttpClient http, String method, String url, String token, String body, int expected) throws Exception {
+        HttpResponse<String> r = send(http, method, url, token, body);
+        while (r.statusCode() == 429) {
+            Thread.sleep(1000 * Long.parseLong(r.headers().firstValue("Retry-After").orElse("1")));
+            r = send(http, method, url, token, body);
+        }
+        if (r.statusCode() != expected) throw new IllegalStateException(method + " " + url + " -> " + r.statusCode() + " " + r.body());
+        return r.body();
+    }
+
+    private static HttpResponse<String> send(HttpClient http, String method, String url, String token, String body) throws Exception {
+        HttpRequest.Builder b = HttpRequest.newBuilder(URI.create(url)).timeout(Duration.ofSeconds(30));
+        if (token != null) b.header("Authorization", "Bearer " + token);
+        if (method.equals("POST")) b.header("Content-Type", "application/json").POST(HttpRequest.BodyPublishers.ofString(body));
+        else b.GET();
+        return http.send(b.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static String field(String json, String name) {
+        return Json.parseObject(json).get(name);
+    }
+}
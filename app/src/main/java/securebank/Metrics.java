@@ -0,0 +1,162 @@
+package securebank;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+// Process-wide counters and histograms with no dependencies. Everything is a LongAdder (striped
+// per contending thread), so recording is a few uncontended adds and hot paths can keep their
+// instruments in static finals. -Dbank.metrics=off turns every record() into a no-op.
+//
+// Histograms are log-linear like HdrHistogram: 8 sub-buckets per power of two, so any
+// reported value is within 12.5% of the real one, from 1 to Long.MAX_VALUE in 496 buckets.
+public final class Metrics {
+    static final boolean ENABLED = !"off".equals(System.getProperty("bank.metrics"));
+
+    private static final Map<String, LongAdder> COUNTERS = new ConcurrentHashMap<>();
+    private static final Map<String, Histogram> HISTOGRAMS = new ConcurrentHashMap<>();
+
+    private Metrics() {}
+
+    public static LongAdder counter(String name) {
+        return COUNTERS.computeIfAbsent(name, k -> new LongAdder());
+    }
+
+    // Latencies in nanoseconds; dumped in microseconds.
+    public static Histogram timer(String name) {
+        return HISTOGRAMS.computeIfAbsent(name, k -> new Histogram(true));
+    }
+
+    // Plain value distributions (batch sizes and the like).
+    public static Histogram histogram(String name) {
+        return HISTOGRAMS.computeIfAbsent(name, k -> new Histogram(false));
+    }
+
+    public static final class Histogram {
+        private static final int SUB_BITS = 3;
+        private static final int SUB = 1 << SUB_BITS;
+        private static final int BUCKETS = (64 - SUB_BITS + 1) * SUB;
+
+        private final boolean nanos;
+        private final LongAdder[] buckets = new LongAdder[BUCKETS];
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        Histogram(boolean nanos) {
+            this.nanos = nanos;
+            for (int i = 0; i < BUCKETS; i++) buckets[i] = new LongAdder();
+        }
+
+        public void record(long value) {
+            if (!ENABLED) return;
+            if (value < 0) value = 0;
+            buckets[bucket(value)].increment();
+            count.increment();
+            sum.add(value);
+            max.accumulate(value);
+        }
+
+        public void recordSince(long startNanos) {
+            record(System.nanoTime() - startNanos);
+        }
+
+        public long count() { return count.sum(); }
+
+        public long max() { return max.get(); }
+
+        public double mean() {
+            long n = count.sum();
+            return n == 0 ? 0 : (double) sum.sum() / n;
+        }
+
+        // Upper edge of the bucket holding the p-th value (0 < p <= 1).
+        public long percentile(double p) {
+            long n = count.sum();
+            if (n == 0) return 0;
+            long rank = Math.max(1, (long) Math.ceil(p * n));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += buckets[i].sum();
+                if (seen >= rank) return Math.min(upperBound(i), max.get());
+            }
+            return max.get();
+        }
+
+        static int bucket(long v) {
+            if (v < SUB) return (int) v;
+            int exp = 63 - Long.numberOfLeadingZeros(v); // >= SUB_BITS
+            int sub = (int) (v >>> (exp - SUB_BITS)) & (SUB - 1);
+            return (exp - SUB_BITS + 1) * SUB + sub;
+        }
+
+        static long upperBound(int bucket) {
+            if (bucket < SUB) return bucket;
+            int exp = bucket / SUB + SUB_BITS - 1;
+            long sub = bucket % SUB;
+            long width = 1L << (exp - SUB_BITS);
+            long lower = (SUB + sub) << (exp - SUB_BITS);
+            return lower + width - 1 < 0 ? Long.MAX_VALUE : lower + width - 1;
+        }
+
+        private String format(long v) {
+            return nanos ? String.format("%.1fus", v / 1000.0) : Long.toString(v);
+        }
+
+        @Override
+        public String toString() {
+            double m = mean();
+            return String.format("count=%d mean=%s p50=%s p99=%s p999=%s max=%s", count(),
+                    nanos ? String.format("%.1fus", m / 1000.0) : String.format("%.1f", m),
+                    format(percentile(0.50)), format(percentile(0.99)), format(percentile(0.999)), format(max()));
+        }
+    }
+
+    // One line per instrument, sorted by name.
+    public static String dump() {
+        StringBuilder b = new StringBuilder("# metrics ").append(Instant.now()).append(System.lineSeparator());
+        java.lang.management.OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.OperatingSystemMXBean) {
+            // CPU time of the whole process, for comparing load against work done
+            long cpu = ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuTime();
+            if (cpu >= 0) b.append("process.cpuMillis ").append(cpu / 1_000_000).append(System.lineSeparator());
+        }
+        for (Map.Entry<String, LongAdder> e : new TreeMap<>(COUNTERS).entrySet()) {
+            b.append(e.getKey()).append(' ').append(e.getValue().sum()).append(System.lineSeparator());
+        }
+        for (Map.Entry<String, Histogram> e : new TreeMap<>(HISTOGRAMS).entrySet()) {
+            if (e.getValue().count() == 0) continue;
+            b.append(e.getKey()).append(' ').append(e.getValue()).append(System.lineSeparator());
+        }
+        return b.toString();
+    }
+
+    // Appends dump() to file every intervalSeconds on a daemon thread.
+    public static ScheduledExecutorService startPeriodicDump(Path file, long intervalSeconds) {
+        ScheduledExecutorService s = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "metrics-dump");
+            t.setDaemon(true);
+            return t;
+        });
+        s.scheduleWithFixedDelay(() -> {
+            try {
+                Files.write(file, dump().getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            } catch (IOException e) {
+                System.err.println("Metrics dump failed: " + e.getMessage());
+            }
+        }, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+        return s;
+    }
+}
@@ -0,0 +1,68 @@
+package securebank;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+// Amounts are held as long cents everywhere inside the core; BigDecimal is only used
+// where text comes in from or goes out to a person.
+public final class Money {
+    private Money() {}
+
+    // Exact conversion of an amount with at most two decimals; throws ArithmeticException otherwise.
+    public static long toCents(BigDecimal amount) {
+        return amount.setScale(2).unscaledValue().longValueExact();
+    }
+
+    public static BigDecimal toBigDecimal(long cents) {
+        return BigDecimal.valueOf(cents, 2);
+    }
+
+    // Parses stored amounts such as "12.5" or "-3.25" without going through BigDecimal;
+    // anything unusual (exponents, extra decimals, more than 16 whole digits) takes the
+    // BigDecimal path with HALF_UP, which throws ArithmeticException rather than wrap when the
+    // cents do not fit in a long. For trusted storage text only; input from people or files
+    // goes through toCents.
+    public static long parseCents(String s) {
+        int len = s.length();
+        int i = 0;
+        boolean negative = false;
+        if (len > 0 && (s.charAt(0) == '-' || s.charAt(0) == '+')) {
+            negative = s.charAt(0) == '-';
+            i = 1;
+        }
+        long whole = 0;
+        int digits = 0;
+        for (; i < len && digits < 16; i++, digits++) { // 16 digits * 100 + 99 cannot overflow
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') break;
+            whole = whole * 10 + (c - '0');
+        }
+        long frac = 0;
+        int fracDigits = 0;
+        if (i < len && s.charAt(i) == '.') {
+            for (i++; i < len && fracDigits < 2; i++, fracDigits++) {
+                char c = s.charAt(i);
+                if (c < '0' || c > '9') break;
+                frac = frac * 10 + (c - '0');
+            }
+        }
+        if (i != len || (digits == 0 && fracDigits == 0)) {
+            return new BigDecimal(s).setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+        }
+        if (fracDigits == 1) frac *= 10;
+        long cents = whole * 100 + frac;
+        return negative ? -cents : cents;
+    }
+
+    // Same text as BigDecimal.valueOf(cents, 2).toPlainString().
+    public static String format(long cents) {
+        if (cents == Long.MIN_VALUE) return toBigDecimal(cents).toPlainString();
+        long abs = Math.abs(cents);
+        long frac = abs % 100;
+        StringBuilder sb = new StringBuilder(24);
+        if (cents < 0) sb.append('-');
+        sb.append(abs / 100).append('.');
+        if (frac < 10) sb.append('0');
+        return sb.append(frac).toString();
+    }
+}
@@ -0,0 +1,118 @@
+package securebank;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+// Startup parsing for large files: the file is cut into byte ranges of about CHUNK_BYTES that
+// begin and end on a line (or record) boundary, each range is parsed into its own result by
+// a fork-join task, and the results come back in file order so callers can merge them where
+// order matters. Must run inside a ForkJoinPool; small files are a single chunk.
+public final class ParallelLoader {
+    static final long CHUNK_BYTES = Long.getLong("bank.load.chunkBytes", 8L << 20);
+
+    @FunctionalInterface
+    public interface RecordParser<R> {
+        // Parses the fixed-width record at absolute offset pos of buf into result.
+        void parse(R result, ByteBuffer buf, int pos);
+    }
+
+    private ParallelLoader() {}
+
+    // Text files: sink sees every line of a chunk, without its line terminator, in order.
+    public static <R> List<R> parseLines(Path file, Supplier<R> newResult, BiConsumer<R, String> sink) throws IOException {
+        return parseLines(file, CHUNK_BYTES, newResult, sink);
+    }
+
+    // chunkBytes is open to tests, which cut small files into many chunks
+    static <R> List<R> parseLines(Path file, long chunkBytes, Supplier<R> newResult, BiConsumer<R, String> sink) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = ch.size();
+            List<Long> starts = new ArrayList<>();
+            starts.add(0L);
+            for (long p = chunkBytes; p < size; p += chunkBytes) {
+                long next = nextLineStart(ch, Math.max(p, starts.get(starts.size() - 1)), size);
+                if (next < size && next > starts.get(starts.size() - 1)) starts.add(next);
+            }
+            starts.add(size);
+            List<ForkJoinTask<R>> tasks = new ArrayList<>(starts.size() - 1);
+            for (int i = 0; i + 1 < starts.size(); i++) {
+                long from = starts.get(i);
+                long to = starts.get(i + 1);
+                tasks.add(ForkJoinTask.adapt(() -> {
+                    R result = newResult.get();
+                    ByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+                    byte[] bytes = new byte[buf.remaining()];
+                    buf.get(bytes);
+                    int lineStart = 0;
+                    for (int j = 0; j <= bytes.length; j++) {
+                        if (j < bytes.length && bytes[j] != '\n') continue;
+                        int end = j > lineStart && bytes[j - 1] == '\r' ? j - 1 : j;
+                        if (j < bytes.length || end > lineStart) sink.accept(result, new String(bytes, lineStart, end - lineStart, StandardCharsets.UTF_8));
+                        lineStart = j + 1;
+                    }
+                    return result;
+                }));
+            }
+            return joinAll(tasks);
+        }
+    }
+
+    // Fixed-width files after a header; a torn record at the end is ignored.
+    public static <R> List<R> parseRecords(Path file, int headerBytes, int recordBytes, Supplier<R> newResult, RecordParser<R> parser) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long records = (ch.size() - headerBytes) / recordBytes;
+            long perChunk = Math.max(1, CHUNK_BYTES / recordBytes);
+            List<ForkJoinTask<R>> tasks = new ArrayList<>();
+            for (long first = 0; first < records; first += perChunk) {
+                long from = headerBytes + first * recordBytes;
+                int count = (int) Math.min(perChunk, records - first);
+                tasks.add(ForkJoinTask.adapt(() -> {
+                    R result = newResult.get();
+                    MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, from, (long) count * recordBytes);
+                    for (int i = 0; i < count; i++) parser.parse(result, buf, i * recordBytes);
+                    return result;
+                }));
+            }
+            return joinAll(tasks);
+        }
+    }
+
+    private static <R> List<R> joinAll(List<ForkJoinTask<R>> tasks) throws IOException {
+        try {
+            ForkJoinTask.invokeAll(tasks);
+        } catch (RuntimeException e) {
+            // adapt() wraps the Callable's checked exceptions
+            if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+            throw e;
+        }
+        List<R> out = new ArrayList<>(tasks.size());
+        for (ForkJoinTask<R> t : tasks) out.add(t.join());
+        return out;
+    }
+
+    // Position just after the first '\n' at or after p - 1, so a chunk never starts mid-line.
+    private static long nextLineStart(FileChannel ch, long p, long size) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(4096);
+        long pos = p - 1;
+        while (pos < size) {
+            buf.clear();
+            int n = ch.read(buf, pos);
+            if (n <= 0) break;
+            for (int i = 0; i < n; i++) {
+                if (buf.get(i) == '\n') return pos + i + 1;
+            }
+            pos += n;
+        }
+        return size;
+    }
+}
@@ -0,0 +1,83 @@
+package securebank;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Runs password hashing on a fixed pool sized to the cores with a short queue, so a login
+// burst uses at most every core once and anything beyond the queue is turned away at once
+// instead of piling up behind the KDF.
+public class PasswordHasher {
+    private static final int QUEUE_PER_THREAD = 4;
+    private static final Metrics.Histogram QUEUE_WAIT = Metrics.timer("auth.queueWait");
+    private static final LongAdder REJECTED = Metrics.counter("auth.rejected");
+
+    private final ThreadPoolExecutor pool;
+
+    public PasswordHasher() {
+        this(Runtime.getRuntime().availableProcessors(), Runtime.getRuntime().availableProcessors() * QUEUE_PER_THREAD);
+    }
+
+    public PasswordHasher(int threads, int queueCapacity) {
+        AtomicInteger n = new AtomicInteger();
+        pool = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread t = new Thread(r, "password-hasher-" + n.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    // Throws RejectedExecutionException straight away when the pool and its queue are full.
+    public String hash(char[] password, String saltBase64, String algorithm, int iterations) throws Exception {
+        long queued = System.nanoTime();
+        return await(submit(() -> {
+            QUEUE_WAIT.recordSince(queued);
+            return Securityutil.hashPasswordBase64(password, saltBase64, algorithm, iterations);
+        }));
+    }
+
+    public boolean verify(User user, char[] password) throws Exception {
+        long queued = System.nanoTime();
+        return await(submit(() -> {
+            QUEUE_WAIT.recordSince(queued);
+            return Securityutil.isExpectedPassword(user.getPasswordHash(), password, user.getSalt(),
+                    user.getAlgorithm(), user.getIterations());
+        }));
+    }
+
+    public int getQueuedCount() { return pool.getQueue().size(); }
+
+    public void shutdown() { pool.shutdownNow(); }
+
+    private <T> Future<T> submit(Callable<T> task) {
+        try {
+            return pool.submit(task);
+        } catch (RejectedExecutionException e) {
+            REJECTED.increment();
+            throw e;
+        }
+    }
+
+    private static <T> T await(Future<T> f) throws Exception {
+        try {
+            return f.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) throw (Exception) cause;
+            throw e;
+        } catch (InterruptedException e) {
+            f.cancel(true);
+            Thread.currentThread().interrupt();
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package securebank;
+
+import java.util.concurrent.RejectedExecutionException;
+
+// Thrown instead of running the KDF when a login or registration is over its rate limit.
+// A RejectedExecutionException, so callers that already back off on a busy hasher do the
+// same here; retryAfterMillis says when a retry can succeed.
+public class RateLimitedException extends RejectedExecutionException {
+    private static final long serialVersionUID = 1L;
+    private final long retryAfterMillis;
+
+    public RateLimitedException(String message, long retryAfterMillis) {
+        super(message);
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    public long getRetryAfterMillis() { return retryAfterMillis; }
+}
@@ -0,0 +1,105 @@
+package securebank;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Token buckets: each holds up to burst tokens and refills at perSecond. The keyed limiter keeps
+// one bucket per key in an LRU map of at most maxKeys entries. A bucket left idle long enough
+// to refill is the same as no bucket, so such entries are dropped, and a key pushed out of the
+// map just starts again with a full bucket. Keys the caller holds (hold) move to a second map
+// that is never evicted, only swept of refilled buckets, so a flood of new keys cannot push
+// them out and reset their limit; callers hold only keys whose number is bounded, e.g. existing
+// users. Checks are a map lookup and a few arithmetic steps under one monitor; callers run them
+// before any expensive work.
+public class RateLimiter {
+
+    // A single bucket; tokens are kept in nanoseconds of refill time so the arithmetic stays integral.
+    public static final class Bucket {
+        private final long nanosPerToken;
+        private final long capacityNanos;
+        private long emptyUntil; // the moment the bucket is full again is emptyUntil + capacityNanos
+
+        public Bucket(double perSecond, int burst) {
+            if (perSecond <= 0 || burst < 1) throw new IllegalArgumentException("rate and burst must be positive");
+            nanosPerToken = (long) Math.ceil(1e9 / perSecond);
+            capacityNanos = nanosPerToken * burst;
+            emptyUntil = Long.MIN_VALUE / 2;
+        }
+
+        // Takes a token and returns 0, or returns how many nanos until one is available.
+        public synchronized long tryAcquire(long nowNanos) {
+            long start = Math.max(emptyUntil, nowNanos - capacityNanos);
+            long next = start + nanosPerToken;
+            if (next > nowNanos) return next - nowNanos;
+            emptyUntil = next;
+            return 0;
+        }
+
+        // Whether the bucket has refilled completely, i.e. holds no state worth keeping.
+        synchronized boolean isFull(long nowNanos) {
+            return emptyUntil + capacityNanos <= nowNanos;
+        }
+    }
+
+    private final double perSecond;
+    private final int burst;
+    private final Map<String, Bucket> buckets;
+    private final Map<String, Bucket> held = new HashMap<>(); // guarded by buckets
+    private int sweepHeldAt = 1024;
+
+    public RateLimiter(double perSecond, int burst, int maxKeys) {
+        if (perSecond <= 0 || burst < 1 || maxKeys < 1) throw new IllegalArgumentException("rate, burst and maxKeys must be positive");
+        this.perSecond = perSecond;
+        this.burst = burst;
+        this.buckets = new LinkedHashMap<String, Bucket>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Bucket> eldest) {
+                // while the map holds more than one entry, the eldest is never the one just added
+                return size() > maxKeys || size() > 1 && eldest.getValue().isFull(System.nanoTime());
+            }
+        };
+    }
+
+    // Takes a token from key's bucket and returns 0, or returns how many nanos until one is available.
+    public long tryAcquire(String key) {
+        long now = System.nanoTime();
+        Bucket b;
+        synchronized (buckets) {
+            b = held.get(key);
+            if (b == null) b = buckets.computeIfAbsent(key, k -> new Bucket(perSecond, burst));
+        }
+        return b.tryAcquire(now);
+    }
+
+    // Keeps key's bucket out of the LRU until it refills or is reset, e.g. once the key is
+    // known to be an existing user's.
+    public void hold(String key) {
+        synchronized (buckets) {
+            if (held.containsKey(key)) return;
+            Bucket b = buckets.remove(key);
+            held.put(key, b != null ? b : new Bucket(perSecond, burst));
+            if (held.size() >= sweepHeldAt) {
+                long now = System.nanoTime();
+                held.values().removeIf(h -> h.isFull(now));
+                sweepHeldAt = Math.max(1024, 2 * held.size());
+            }
+        }
+    }
+
+    // Forgets key, e.g. after a successful login.
+    public void reset(String key) {
+        synchronized (buckets) {
+            buckets.remove(key);
+            held.remove(key);
+        }
+    }
+
+    public int size() {
+        synchronized (buckets) {
+            return buckets.size() + held.size();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package securebank;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+// One-shot split of a single-directory store into N shards (see ShardedDataStore). The shards
+// are built in a scratch directory, moved in, and shards.txt is written last, so an interrupted
+// run leaves the unsharded store in charge. The old files are kept under pre-shard.bak/.
+// Idempotency keys are copied to every shard, so retries still dedupe after the split.
+//
+//   java -cp app/target/securebank.jar securebank.Resharder [dataDir] shards
+public class Resharder {
+    private static final int BATCH = 8192;
+    private static final String SCRATCH = "reshard.tmp";
+    private static final String BACKUP = "pre-shard.bak";
+
+    public static void main(String[] args) throws Exception {
+        Path dir = Paths.get(args.length > 1 ? args[0] : "data");
+        int count = Integer.parseInt(args.length > 1 ? args[1] : args.length > 0 ? args[0] : "4");
+        if (count < 2) throw new IllegalArgumentException("Shard count must be >= 2");
+        if (ShardedDataStore.isPresent(dir)) {
+            System.out.println(dir + " is already sharded.");
+            return;
+        }
+        long start = System.nanoTime();
+        // shards keep the storage format of the directory they come from
+        if (BinaryStore.isPresent(dir) && System.getProperty("bank.storage") == null) System.setProperty("bank.storage", "binary");
+        if (SegmentedLedger.isPresent(dir) && System.getProperty("bank.ledger") == null) System.setProperty("bank.ledger", "lazy");
+
+        Path scratch = dir.resolve(SCRATCH);
+        deleteTree(scratch);
+        Files.createDirectories(scratch);
+        Path keys = dir.resolve("idempotency.log");
+        if (Files.exists(keys)) {
+            for (int i = 0; i < count; i++) {
+                Path shard = ShardedDataStore.shardDir(scratch, i);
+                Files.createDirectories(shard);
+                Files.copy(keys, shard.resolve(keys.getFileName()));
+            }
+        }
+
+        long users = 0, accounts = 0, txCount = 0;
+        DataStore source = new DataStore(dir.toString(), FsyncPolicy.osManaged());
+        try {
+            ShardedDataStore target = new ShardedDataStore(scratch, count, FsyncPolicy.osManaged());
+            try {
+                List<CompletableFuture<?>> pending = new ArrayList<>();
+                for (User u : source.getUsers()) {
+                    pending.add(target.addUser(u));
+                    users++;
+                }
+                for (Account a : source.getAccounts()) {
+                    pending.add(target.addAccount(new Account(a.getAccountId(), a.getOwnerUsername(), a.getBalanceCents())));
+                    accounts++;
+                    List<TransactionRecord> history = source.getTransactionsForAccount(a.getAccountId());
+                    Collections.reverse(history); // oldest first, as they were appended
+                    for (TransactionRecord t : history) pending.add(target.addTransaction(t));
+                    txCount += history.size();
+                    if (pending.size() >= BATCH) joinAll(pending);
+                }
+                joinAll(pending);
+                target.persistAccounts();
+            } finally {
+                target.close();
+            }
+        } finally {
+            source.close();
+        }
+
+        List<Path> old = new ArrayList<>();
+        try (Stream<Path> s = Files.list(dir)) {
+            s.filter(p -> !p.getFileName().toString().equals(SCRATCH) && !p.getFileName().toString().equals(BACKUP)).forEach(old::add);
+        }
+        for (int i = 0; i < count; i++) {
+            Files.move(ShardedDataStore.shardDir(scratch, i), ShardedDataStore.shardDir(dir, i), StandardCopyOption.ATOMIC_MOVE);
+        }
+        ShardedDataStore.writeShardCount(dir, count);
+        deleteTree(scratch);
+        Path backup = dir.resolve(BACKUP);
+        Files.createDirectories(backup);
+        for (Path p : old) Files.move(p, backup.resolve(p.getFileName()), StandardCopyOption.REPLACE_EXISTING);
+        System.out.printf("Split %d users, %d accounts and %d transactions into %d shards in %d ms.%n",
+                users, accounts, txCount, count, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private static void joinAll(List<CompletableFuture<?>> pending) {
+        for (CompletableFuture<?> f : pending) f.join();
+        pending.clear();
+    }
+
+    private static void deleteTree(Path root) throws IOException {
+        if (!Files.exists(root)) return;
+        List<Path> paths = new ArrayList<>();
+        try (Stream<Path> s = Files.walk(root)) {
+            s.forEach(paths::add);
+        }
+        Collections.reverse(paths); // children before their directory
+        for (Path p : paths) Files.delete(p);
+    }
+}
@@ -0,0 +1,94 @@
+package securebank;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+
+public class Securityutil {
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final int SALT_BYTES = 16;
+    private static final int KEY_LENGTH = 256; // bits
+    private static final Metrics.Histogram KDF = Metrics.timer("auth.kdf");
+
+    // Parameters of hashes written before they were stored per user.
+    public static final String LEGACY_ALGORITHM = "PBKDF2WithHmacSHA256";
+    public static final int LEGACY_ITERATIONS = 65536;
+
+    // Parameters for new hashes; raise bank.kdf.iterations over time and users are rehashed on their next login.
+    public static final String ALGORITHM = System.getProperty("bank.kdf.algorithm", LEGACY_ALGORITHM);
+    public static final int ITERATIONS = Integer.getInteger("bank.kdf.iterations", LEGACY_ITERATIONS);
+
+    public static final int MAX_USERNAME_LENGTH = 64;
+
+    // SecretKeyFactory lookups go through the provider list every time, so keep one per thread and algorithm.
+    private static final ThreadLocal<Map<String, SecretKeyFactory>> FACTORIES = ThreadLocal.withInitial(HashMap::new);
+
+    public static String generateSaltBase64() {
+        byte[] s = new byte[SALT_BYTES];
+        RANDOM.nextBytes(s);
+        return Base64.getEncoder().encodeToString(s);
+    }
+
+    public static String hashPasswordBase64(char[] password, String saltBase64) throws Exception {
+        return hashPasswordBase64(password, saltBase64, ALGORITHM, ITERATIONS);
+    }
+
+    public static String hashPasswordBase64(char[] password, String saltBase64, String algorithm, int iterations) throws Exception {
+        byte[] salt = Base64.getDecoder().decode(saltBase64);
+        PBEKeySpec spec = new PBEKeySpec(password, salt, iterations, KEY_LENGTH);
+        long start = System.nanoTime();
+        try {
+            byte[] key = factory(algorithm).generateSecret(spec).getEncoded();
+            return Base64.getEncoder().encodeToString(key);
+        } finally {
+            spec.clearPassword();
+            KDF.recordSince(start);
+        }
+    }
+
+    private static SecretKeyFactory factory(String algorithm) throws NoSuchAlgorithmException {
+        Map<String, SecretKeyFactory> cache = FACTORIES.get();
+        SecretKeyFactory skf = cache.get(algorithm);
+        if (skf == null) {
+            skf = SecretKeyFactory.getInstance(algorithm);
+            cache.put(algorithm, skf);
+        }
+        return skf;
+    }
+
+    // constant-time comparison
+    public static boolean isExpectedPassword(String hashBase64, char[] password, String saltBase64) throws Exception {
+        return isExpectedPassword(hashBase64, password, saltBase64, LEGACY_ALGORITHM, LEGACY_ITERATIONS);
+    }
+
+    public static boolean isExpectedPassword(String hashBase64, char[] password, String saltBase64, String algorithm, int iterations) throws Exception {
+        String computed = hashPasswordBase64(password, saltBase64, algorithm, iterations);
+        return slowEquals(hashBase64.getBytes("UTF-8"), computed.getBytes("UTF-8"));
+    }
+
+    private static boolean slowEquals(byte[] a, byte[] b) {
+        int diff = a.length ^ b.length;
+        for (int i = 0; i < Math.min(a.length, b.length); i++) diff |= a[i] ^ b[i];
+        return diff == 0;
+    }
+
+    // Usernames are stored unquoted in users.txt, accounts.txt, the journal and names.txt, which
+    // are split on line breaks and '|'; '%' starts User's escape. None of them may appear in one.
+    public static boolean isValidUsername(String username) {
+        if (username.isEmpty() || username.length() > MAX_USERNAME_LENGTH) return false;
+        for (int i = 0; i < username.length(); i++) {
+            char c = username.charAt(i);
+            if (Character.isISOControl(c) || c == '|' || c == '%' || c == '\u2028' || c == '\u2029') return false;
+        }
+        return true;
+    }
+
+    public static String sanitizeUsername(String username) {
+        if (username == null) return "";
+        return username.trim();
+    }
+}
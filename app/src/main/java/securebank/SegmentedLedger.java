@@ -0,0 +1,680 @@
+package securebank;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+// Transaction ledger that stays on disk. Records are appended to fixed-width segment files
+// (the BinaryStore record layout) under ledger/. Only the active segment is held in memory;
+// it is sealed once it holds segmentRecords records or, with segmentMillis set, once a record
+// arrives that much later than its oldest one. A sealed segment gets an offset index,
+// segment-N.idx, that lists every account's record ordinals. History is then streamed
+// newest-first from the mapped segments, so heap use is bounded by the segment size rather
+// than the age of the ledger, and startup reads only the active segment.
+//
+// Only the newest hotSegments sealed segments stay like that. Older ones are archived by a
+// background thread into one Deflater-compressed file each, segment-N.dz, which replaces the
+// .bin/.idx pair once it is complete on disk. Archived records are regrouped by account, so an
+// account's records in a segment are one run that usually sits in a single block, and each
+// block is stored byte column by byte column so the zero padding, refs and timestamp high
+// bytes of neighbouring records line up. The header holds the segment's time range and a
+// bloom filter of its accounts: lookups skip segments that cannot match without reading their
+// index or inflating anything.
+//
+// segment-N.bin: ledger header | records          (N = ordinal of the first record)
+// segment-N.idx: int magic, int entryCount | { int accountRef, int firstPosting, int count }* sorted by ref
+//                | int ordinal* (ascending within each account)
+// segment-N.dz:  int magic, int ordinals, int records, int blockRecords, int blockCount, int entryCount,
+//                int bloomLongs, int 0, long minMillis, long maxMillis | long bloom*
+//                | { int accountRef, int firstRecord, int count }* sorted by ref | int blockOffset* (blockCount + 1)
+//                | one Deflater stream per block of blockRecords records
+public class SegmentedLedger implements Closeable {
+    public static final String DIR = "ledger";
+    private static final String PREFIX = "segment-";
+    private static final int INDEX_MAGIC = 0x42495831; // "BIX1"
+    private static final int ARCHIVE_MAGIC = 0x42445a31; // "BDZ1"
+    private static final int INDEX_HEADER_BYTES = 8;
+    private static final int ARCHIVE_HEADER_BYTES = 48;
+    private static final int INDEX_ENTRY_BYTES = 12;
+    private static final int HEADER = BinaryStore.HEADER_BYTES;
+    private static final int RECORD = BinaryStore.TX_RECORD_BYTES;
+    private static final int BLOCK_RECORDS = 64; // a lookup inflates whole blocks; 256 is ~10% smaller and twice as slow
+    private static final int BLOOM_BITS_PER_ACCOUNT = 10; // with 6 probes about 1% false positives
+    private static final int BLOOM_PROBES = 6;
+
+    // A sealed segment; immutable once published. Index entries are { ref, first, count }
+    // sorted by ref in both kinds; what first points at differs.
+    private abstract static class Segment {
+        final long firstOrdinal;
+        final ByteBuffer index;
+        final int entriesAt;
+        final int entryCount;
+        long minMillis = Long.MAX_VALUE;
+        long maxMillis = Long.MIN_VALUE;
+
+        Segment(long firstOrdinal, ByteBuffer index, int entriesAt, int entryCount) {
+            this.firstOrdinal = firstOrdinal;
+            this.index = index;
+            this.entriesAt = entriesAt;
+            this.entryCount = entryCount;
+        }
+
+        // index entry offset for accountRef, or -1
+        int find(int accountRef) {
+            int lo = 0, hi = entryCount - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                int ref = index.getInt(entriesAt + mid * INDEX_ENTRY_BYTES);
+                if (ref < accountRef) lo = mid + 1;
+                else if (ref > accountRef) hi = mid - 1;
+                else return entriesAt + mid * INDEX_ENTRY_BYTES;
+            }
+            return -1;
+        }
+
+        int count(int accountRef) {
+            int e = find(accountRef);
+            return e < 0 ? 0 : countAt(e);
+        }
+
+        int countAt(int entry) {
+            return index.getInt(entry + 8);
+        }
+
+        // False when the segment certainly holds no record of the account in [from, to].
+        boolean mayHold(int accountRef, long from, long to) {
+            return minMillis <= to && maxMillis >= from && mayContain(accountRef);
+        }
+
+        abstract boolean mayContain(int accountRef);
+
+        // The i-th oldest record of the account at entry; block caches an archived segment's last inflated block.
+        abstract TransactionRecord read(BinaryStore names, int entry, int i, Block block);
+    }
+
+    // .bin/.idx as sealed: records in arrival order, postings list each account's ordinals.
+    private static final class PlainSegment extends Segment {
+        final MappedByteBuffer records;
+
+        PlainSegment(long firstOrdinal, MappedByteBuffer records, MappedByteBuffer index) {
+            super(firstOrdinal, index, INDEX_HEADER_BYTES, index.getInt(4));
+            this.records = records;
+            for (int pos = HEADER; pos + RECORD <= records.limit(); pos += RECORD) {
+                long millis = BinaryStore.epochMillisAt(records, pos);
+                minMillis = Math.min(minMillis, millis);
+                maxMillis = Math.max(maxMillis, millis);
+            }
+        }
+
+        int records() {
+            return (records.limit() - HEADER) / RECORD;
+        }
+
+        int ordinalAt(int entry, int i) {
+            int postings = INDEX_HEADER_BYTES + entryCount * INDEX_ENTRY_BYTES;
+            return index.getInt(postings + (index.getInt(entry + 4) + i) * 4);
+        }
+
+        @Override
+        boolean mayContain(int accountRef) {
+            return true; // the index is exact, and only the few hot segments are plain
+        }
+
+        @Override
+        TransactionRecord read(BinaryStore names, int entry, int i, Block block) {
+            return names.decodeTransaction(records, HEADER + ordinalAt(entry, i) * RECORD);
+        }
+    }
+
+    // .dz: one mapped file; blocks are inflated on demand.
+    private static final class ArchivedSegment extends Segment {
+        final Path file;
+        final int ordinals;
+        final int records;
+        final int blockRecords;
+        final int bloomLongs;
+        final int offsetsAt;
+        final int dataAt;
+
+        ArchivedSegment(long firstOrdinal, Path file, MappedByteBuffer buf) throws IOException {
+            super(firstOrdinal, buf, ARCHIVE_HEADER_BYTES + buf.getInt(24) * 8, buf.getInt(20));
+            if (buf.getInt(0) != ARCHIVE_MAGIC) throw new IOException("Bad archived segment: " + file);
+            this.file = file;
+            ordinals = buf.getInt(4);
+            records = buf.getInt(8);
+            blockRecords = buf.getInt(12);
+            bloomLongs = buf.getInt(24);
+            minMillis = buf.getLong(32);
+            maxMillis = buf.getLong(40);
+            offsetsAt = entriesAt + entryCount * INDEX_ENTRY_BYTES;
+            dataAt = offsetsAt + (buf.getInt(16) + 1) * 4;
+        }
+
+        @Override
+        boolean mayContain(int accountRef) {
+            long h = bloomHash(accountRef);
+            int block = bloomBlock(h, bloomLongs);
+            long bits = mix(h);
+            for (int k = 0; k < BLOOM_PROBES; k++, bits >>>= 9) {
+                int bit = (int) bits & 511;
+                if ((index.getLong(ARCHIVE_HEADER_BYTES + (block + (bit >>> 6)) * 8) & 1L << bit) == 0) return false;
+            }
+            return true;
+        }
+
+        @Override
+        TransactionRecord read(BinaryStore names, int entry, int i, Block block) {
+            int r = index.getInt(entry + 4) + i;
+            int b = r / blockRecords;
+            if (block.segment != this || block.number != b) {
+                block.data = inflate(b);
+                block.segment = this;
+                block.number = b;
+            }
+            return names.decodeTransaction(block.data, (r - b * blockRecords) * RECORD);
+        }
+
+        private ByteBuffer inflate(int b) {
+            int n = Math.min(blockRecords, records - b * blockRecords);
+            int from = index.getInt(offsetsAt + b * 4), to = index.getInt(offsetsAt + b * 4 + 4);
+            byte[] columns = new byte[n * RECORD];
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(index.slice(dataAt + from, to - from));
+                if (inflater.inflate(columns) != columns.length || !inflater.finished()) throw new DataFormatException("short block");
+            } catch (DataFormatException e) {
+                throw new UncheckedIOException(new IOException("Corrupt block " + b + " in " + file + ": " + e.getMessage()));
+            } finally {
+                inflater.end();
+            }
+            byte[] rows = new byte[columns.length];
+            for (int c = 0; c < RECORD; c++) {
+                for (int r = 0; r < n; r++) rows[r * RECORD + c] = columns[c * n + r];
+            }
+            return ByteBuffer.wrap(rows);
+        }
+    }
+
+    // A reader's most recently inflated archive block.
+    private static final class Block {
+        Segment segment;
+        int number;
+        ByteBuffer data;
+    }
+
+    private final Path dir;
+    private final BinaryStore names;
+    private final FsyncPolicy fsyncPolicy;
+    private final int segmentRecords;
+    private final long segmentMillis; // 0: size only
+    private final int hotSegments;
+    private final ExecutorService archiver;
+
+    private volatile List<Segment> sealed = new ArrayList<>(); // oldest first, copy-on-write
+    // active segment, guarded by this
+    private long activeFirstOrdinal;
+    private long activeMinMillis = Long.MAX_VALUE;
+    private final List<TransactionRecord> active = new ArrayList<>();
+    private final Map<String, List<Integer>> activeByAccount = new HashMap<>();
+    private final Set<Long> archiving = new HashSet<>();
+    private JournalWriter writer;
+
+    public static boolean isPresent(Path baseDir) {
+        return Files.isDirectory(baseDir.resolve(DIR));
+    }
+
+    public SegmentedLedger(Path baseDir, BinaryStore names, FsyncPolicy fsyncPolicy, int segmentRecords) throws IOException {
+        this(baseDir, names, fsyncPolicy, segmentRecords, 0, 1);
+    }
+
+    // A transactions.bin left by plain binary storage is taken over as the first segment.
+    public SegmentedLedger(Path baseDir, BinaryStore names, FsyncPolicy fsyncPolicy, int segmentRecords,
+                           long segmentMillis, int hotSegments) throws IOException {
+        this.dir = baseDir.resolve(DIR);
+        this.names = names;
+        this.fsyncPolicy = fsyncPolicy;
+        this.segmentRecords = segmentRecords;
+        this.segmentMillis = segmentMillis;
+        this.hotSegments = Math.max(0, hotSegments);
+        this.archiver = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "ledger-archiver");
+            t.setDaemon(true);
+            return t;
+        });
+        Path legacy = baseDir.resolve(BinaryStore.TRANSACTIONS_FILE);
+        if (!Files.isDirectory(dir)) {
+            Files.createDirectories(dir);
+            if (Files.exists(legacy)) Files.move(legacy, segmentFile(0), StandardCopyOption.ATOMIC_MOVE);
+        }
+        open();
+    }
+
+    private void open() throws IOException {
+        TreeSet<Long> starts = new TreeSet<>();
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir, PREFIX + "*.{bin,dz}")) {
+            for (Path p : ds) {
+                String n = p.getFileName().toString();
+                starts.add(Long.parseLong(n.substring(PREFIX.length(), n.lastIndexOf('.'))));
+            }
+        }
+        if (starts.isEmpty()) {
+            BinaryStore.createLedgerFile(segmentFile(0));
+            starts.add(0L);
+        }
+        List<Segment> loaded = new ArrayList<>();
+        for (long start : starts) {
+            boolean last = start == starts.last();
+            if (Files.exists(archiveFile(start))) {
+                // an archive is only moved into place complete, so a .bin/.idx beside it is left over from the swap
+                Files.deleteIfExists(indexFile(start));
+                Files.deleteIfExists(segmentFile(start));
+                ArchivedSegment s = mapArchive(start);
+                loaded.add(s);
+                if (last) {
+                    activeFirstOrdinal = start + s.ordinals;
+                    BinaryStore.createLedgerFile(segmentFile(activeFirstOrdinal));
+                }
+                continue;
+            }
+            Path bin = segmentFile(start);
+            if (last) BinaryStore.truncateTornTail(bin);
+            long records = (Files.size(bin) - HEADER) / RECORD;
+            if (!Files.exists(indexFile(start)) && (!last || records >= segmentRecords)) buildIndexFromFile(start);
+            if (Files.exists(indexFile(start))) {
+                loaded.add(mapSegment(start));
+                if (last) {
+                    activeFirstOrdinal = start + records;
+                    BinaryStore.createLedgerFile(segmentFile(activeFirstOrdinal));
+                }
+            } else {
+                activeFirstOrdinal = start;
+                loadActive(bin);
+            }
+        }
+        sealed = loaded;
+        writer = new JournalWriter(segmentFile(activeFirstOrdinal), fsyncPolicy);
+        archiveCold();
+    }
+
+    private void loadActive(Path bin) throws IOException {
+        try (FileChannel ch = FileChannel.open(bin, StandardOpenOption.READ)) {
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            BinaryStore.checkLedgerHeader(buf.duplicate(), bin);
+            for (int pos = HEADER; pos + RECORD <= buf.limit(); pos += RECORD) {
+                addActive(names.decodeTransaction(buf, pos)); // a null still takes its ordinal
+            }
+        }
+    }
+
+    // Appends records in one write; seals the active segment once it is full, or before the
+    // records when they are segmentMillis past its oldest one.
+    public synchronized CompletableFuture<Void> append(List<TransactionRecord> records) {
+        if (segmentMillis > 0 && !activeByAccount.isEmpty() && !records.isEmpty() && records.get(0).getEpochMillis() - activeMinMillis >= segmentMillis) {
+            sealQuietly();
+        }
+        for (TransactionRecord t : records) addActive(t);
+        CompletableFuture<Void> written = writer.appendBytes(names.encodeTransactions(records));
+        CompletableFuture<Void> done = CompletableFuture.allOf(names.namesDurable(), written);
+        if (active.size() >= segmentRecords) sealQuietly();
+        return done;
+    }
+
+    private void addActive(TransactionRecord t) {
+        int ordinal = active.size();
+        active.add(t);
+        if (t == null) return;
+        activeByAccount.computeIfAbsent(t.getAccountId(), k -> new ArrayList<>()).add(ordinal);
+        activeMinMillis = Math.min(activeMinMillis, t.getEpochMillis());
+    }
+
+    private void sealQuietly() {
+        try {
+            seal();
+        } catch (IOException e) {
+            System.err.println("Ledger segment seal failed: " + e.getMessage());
+        }
+    }
+
+    private void seal() throws IOException {
+        long start = activeFirstOrdinal;
+        long next = start + active.size();
+        BinaryStore.createLedgerFile(segmentFile(next));
+        writer.roll(segmentFile(next)).join();
+        Map<Integer, int[]> postings = new TreeMap<>();
+        for (Map.Entry<String, List<Integer>> e : activeByAccount.entrySet()) {
+            List<Integer> ords = e.getValue();
+            int[] arr = new int[ords.size()];
+            for (int i = 0; i < arr.length; i++) arr[i] = ords.get(i);
+            postings.put(names.intern(e.getKey()), arr);
+        }
+        writeIndex(start, postings);
+        List<Segment> grown = new ArrayList<>(sealed);
+        grown.add(mapSegment(start));
+        sealed = grown;
+        activeFirstOrdinal = next;
+        activeMinMillis = Long.MAX_VALUE;
+        active.clear();
+        activeByAccount.clear();
+        archiveCold();
+    }
+
+    private void buildIndexFromFile(long start) throws IOException {
+        Path bin = segmentFile(start);
+        Map<Integer, List<Integer>> byRef = new TreeMap<>();
+        try (FileChannel ch = FileChannel.open(bin, StandardOpenOption.READ)) {
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            BinaryStore.checkLedgerHeader(buf.duplicate(), bin);
+            int ordinal = 0;
+            for (int pos = HEADER; pos + RECORD <= buf.limit(); pos += RECORD, ordinal++) {
+                byRef.computeIfAbsent(BinaryStore.accountRefAt(buf, pos), k -> new ArrayList<>()).add(ordinal);
+            }
+        }
+        Map<Integer, int[]> postings = new TreeMap<>();
+        for (Map.Entry<Integer, List<Integer>> e : byRef.entrySet()) {
+            int[] arr = new int[e.getValue().size()];
+            for (int i = 0; i < arr.length; i++) arr[i] = e.getValue().get(i);
+            postings.put(e.getKey(), arr);
+        }
+        writeIndex(start, postings);
+    }
+
+    // postings must iterate in ascending ref order
+    private void writeIndex(long start, Map<Integer, int[]> postings) throws IOException {
+        int total = 0;
+        for (int[] p : postings.values()) total += p.length;
+        ByteBuffer buf = ByteBuffer.allocate(INDEX_HEADER_BYTES + postings.size() * INDEX_ENTRY_BYTES + total * 4);
+        buf.putInt(INDEX_MAGIC).putInt(postings.size());
+        int first = 0;
+        for (Map.Entry<Integer, int[]> e : postings.entrySet()) {
+            buf.putInt(e.getKey()).putInt(first).putInt(e.getValue().length);
+            first += e.getValue().length;
+        }
+        for (int[] p : postings.values()) for (int ord : p) buf.putInt(ord);
+        buf.flip();
+        writeAtomically(indexFile(start), buf);
+    }
+
+    private static void writeAtomically(Path file, ByteBuffer... data) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (ByteBuffer buf : data) while (buf.hasRemaining()) ch.write(buf);
+            ch.force(true);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private PlainSegment mapSegment(long start) throws IOException {
+        MappedByteBuffer records;
+        MappedByteBuffer index;
+        try (FileChannel ch = FileChannel.open(segmentFile(start), StandardOpenOption.READ)) {
+            records = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+        }
+        try (FileChannel ch = FileChannel.open(indexFile(start), StandardOpenOption.READ)) {
+            index = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+        }
+        if (index.getInt(0) != INDEX_MAGIC) throw new IOException("Bad segment index: " + indexFile(start));
+        return new PlainSegment(start, records, index);
+    }
+
+    private ArchivedSegment mapArchive(long start) throws IOException {
+        try (FileChannel ch = FileChannel.open(archiveFile(start), StandardOpenOption.READ)) {
+            return new ArchivedSegment(start, archiveFile(start), ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size()));
+        }
+    }
+
+    // Archive tier
+
+    // Queues every plain segment but the newest hotSegments; caller holds this.
+    private void archiveCold() {
+        List<Segment> segs = sealed;
+        for (int i = 0; i < segs.size() - hotSegments; i++) {
+            Segment s = segs.get(i);
+            if (s instanceof PlainSegment && archiving.add(s.firstOrdinal)) {
+                archiver.execute(() -> archiveQuietly((PlainSegment) s));
+            }
+        }
+    }
+
+    private void archiveQuietly(PlainSegment plain) {
+        try {
+            ArchivedSegment archived = archive(plain);
+            synchronized (this) {
+                List<Segment> swapped = new ArrayList<>(sealed);
+                swapped.set(swapped.indexOf(plain), archived);
+                sealed = swapped;
+                archiving.remove(plain.firstOrdinal);
+            }
+            // readers still holding the plain segment keep their mapping
+            Files.deleteIfExists(segmentFile(plain.firstOrdinal));
+            Files.deleteIfExists(indexFile(plain.firstOrdinal));
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Ledger segment archive failed: " + e.getMessage());
+        }
+    }
+
+    // Writes segment-N.dz from a plain segment's records and index; the records of each index
+    // entry, in order, become one run.
+    private ArchivedSegment archive(PlainSegment plain) throws IOException {
+        int entries = plain.entryCount;
+        int records = 0;
+        for (int e = 0; e < entries; e++) records += plain.countAt(plain.entriesAt + e * INDEX_ENTRY_BYTES);
+        int blockCount = (records + BLOCK_RECORDS - 1) / BLOCK_RECORDS;
+        int bloomLongs = Math.max(1, (int) (((long) entries * BLOOM_BITS_PER_ACCOUNT + 511) / 512)) * 8;
+        ByteBuffer head = ByteBuffer.allocate(ARCHIVE_HEADER_BYTES + bloomLongs * 8 + entries * INDEX_ENTRY_BYTES + (blockCount + 1) * 4);
+        head.putInt(ARCHIVE_MAGIC).putInt(plain.records()).putInt(records).putInt(BLOCK_RECORDS)
+                .putInt(blockCount).putInt(entries).putInt(bloomLongs).putInt(0)
+                .putLong(plain.minMillis).putLong(plain.maxMillis);
+        int entriesAt = head.position() + bloomLongs * 8;
+        int offsetsAt = entriesAt + entries * INDEX_ENTRY_BYTES;
+
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        byte[] rows = new byte[BLOCK_RECORDS * RECORD];
+        byte[] columns = new byte[rows.length];
+        byte[] out = new byte[64 * 1024];
+        Deflater deflater = new Deflater();
+        try {
+            int r = 0, block = 0;
+            for (int e = 0; e < entries; e++) {
+                int entry = plain.entriesAt + e * INDEX_ENTRY_BYTES;
+                int ref = plain.index.getInt(entry), count = plain.countAt(entry);
+                bloomAdd(head, ARCHIVE_HEADER_BYTES, bloomLongs, ref);
+                head.putInt(entriesAt + e * INDEX_ENTRY_BYTES, ref).putInt(entriesAt + e * INDEX_ENTRY_BYTES + 4, r)
+                        .putInt(entriesAt + e * INDEX_ENTRY_BYTES + 8, count);
+                for (int i = 0; i < count; i++, r++) {
+                    plain.records.get(HEADER + plain.ordinalAt(entry, i) * RECORD, rows, (r % BLOCK_RECORDS) * RECORD, RECORD);
+                    if ((r + 1) % BLOCK_RECORDS == 0 || r + 1 == records) {
+                        int n = r % BLOCK_RECORDS + 1;
+                        for (int c = 0; c < RECORD; c++) {
+                            for (int k = 0; k < n; k++) columns[c * n + k] = rows[k * RECORD + c];
+                        }
+                        deflater.reset();
+                        deflater.setInput(columns, 0, n * RECORD);
+                        deflater.finish();
+                        while (!deflater.finished()) data.write(out, 0, deflater.deflate(out));
+                        head.putInt(offsetsAt + ++block * 4, data.size());
+                    }
+                }
+            }
+        } finally {
+            deflater.end();
+        }
+        head.rewind();
+        writeAtomically(archiveFile(plain.firstOrdinal), head, ByteBuffer.wrap(data.toByteArray()));
+        return mapArchive(plain.firstOrdinal);
+    }
+
+    // Blocked bloom filter: all probes for a ref fall in one 512-bit block, so a lookup reads
+    // a single cache line of the mapped header.
+    private static void bloomAdd(ByteBuffer buf, int at, int longs, int ref) {
+        long h = bloomHash(ref);
+        int block = bloomBlock(h, longs);
+        long bits = mix(h);
+        for (int k = 0; k < BLOOM_PROBES; k++, bits >>>= 9) {
+            int bit = (int) bits & 511;
+            int word = at + (block + (bit >>> 6)) * 8;
+            buf.putLong(word, buf.getLong(word) | 1L << bit);
+        }
+    }
+
+    private static long bloomHash(int ref) {
+        return mix(ref + 0x9e3779b97f4a7c15L);
+    }
+
+    // first long of the ref's block
+    private static int bloomBlock(long h, int longs) {
+        return (int) (((h >>> 32) * (longs / 8)) >>> 32) * 8;
+    }
+
+    private static long mix(long x) {
+        x = (x ^ (x >>> 33)) * 0xff51afd7ed558ccdL;
+        x = (x ^ (x >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return x ^ (x >>> 33);
+    }
+
+    // Queries
+
+    public int count(String accountId) {
+        List<Segment> segs;
+        int n;
+        synchronized (this) {
+            List<Integer> a = activeByAccount.get(accountId);
+            n = a == null ? 0 : a.size();
+            segs = sealed;
+        }
+        Integer ref = refOf(accountId);
+        if (ref != null) for (Segment s : segs) if (s.mayContain(ref)) n += s.count(ref);
+        return n;
+    }
+
+    // The account's history, newest first, read lazily segment by segment.
+    public Stream<TransactionRecord> stream(String accountId) {
+        return stream(accountId, 0);
+    }
+
+    public Stream<TransactionRecord> stream(String accountId, int offset) {
+        return stream(accountId, offset, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    // Records with fromMillis <= epochMillis <= toMillis, newest first. Segments are not in
+    // strict time order, so every one is considered, but those whose time range or bloom
+    // filter rule the account out are passed over on their header alone.
+    public Stream<TransactionRecord> stream(String accountId, long fromMillis, long toMillis) {
+        return stream(accountId, 0, fromMillis, toMillis)
+                .filter(t -> t.getEpochMillis() >= fromMillis && t.getEpochMillis() <= toMillis);
+    }
+
+    // offset is only counted over the full time range
+    private Stream<TransactionRecord> stream(String accountId, int offset, long fromMillis, long toMillis) {
+        List<TransactionRecord> recent = new ArrayList<>();
+        List<Segment> segs;
+        synchronized (this) {
+            List<Integer> ords = activeByAccount.get(accountId);
+            if (ords != null) {
+                for (int i = ords.size() - 1 - offset; i >= 0; i--) recent.add(active.get(ords.get(i)));
+                offset = Math.max(0, offset - ords.size());
+            }
+            segs = sealed;
+        }
+        Iterator<TransactionRecord> it = new HistoryIterator(recent.iterator(), segs, refOf(accountId), offset, fromMillis, toMillis);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(it, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    private Integer refOf(String accountId) {
+        // only ids that already have a ref can appear in sealed segments
+        return names.refIfPresent(accountId);
+    }
+
+    // Walks the in-memory part first, then sealed segments newest to oldest, skipping
+    // whole segments while the offset covers them or their header rules them out.
+    private final class HistoryIterator implements Iterator<TransactionRecord> {
+        private final Iterator<TransactionRecord> recent;
+        private final List<Segment> segs;
+        private final Integer ref;
+        private final long fromMillis;
+        private final long toMillis;
+        private final Block block = new Block();
+        private int skip;
+        private int segIndex;
+        private Segment seg;
+        private int entry;
+        private int next; // index within the account's records in seg, counting down
+
+        HistoryIterator(Iterator<TransactionRecord> recent, List<Segment> segs, Integer ref, int skip, long fromMillis, long toMillis) {
+            this.recent = recent;
+            this.segs = segs;
+            this.ref = ref;
+            this.skip = skip;
+            this.fromMillis = fromMillis;
+            this.toMillis = toMillis;
+            this.segIndex = segs.size();
+            this.next = -1;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (recent.hasNext()) return true;
+            if (ref == null) return false;
+            while (next < 0) {
+                if (--segIndex < 0) return false;
+                seg = segs.get(segIndex);
+                if (!seg.mayHold(ref, fromMillis, toMillis)) continue;
+                entry = seg.find(ref);
+                if (entry < 0) continue;
+                int count = seg.countAt(entry);
+                if (skip >= count) {
+                    skip -= count;
+                    continue;
+                }
+                next = count - 1 - skip;
+                skip = 0;
+            }
+            return true;
+        }
+
+        @Override
+        public TransactionRecord next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            if (recent.hasNext()) return recent.next();
+            return seg.read(names, entry, next--, block);
+        }
+    }
+
+    private Path segmentFile(long start) {
+        return dir.resolve(String.format("%s%020d.bin", PREFIX, start));
+    }
+
+    private Path indexFile(long start) {
+        return dir.resolve(String.format("%s%020d.idx", PREFIX, start));
+    }
+
+    private Path archiveFile(long start) {
+        return dir.resolve(String.format("%s%020d.dz", PREFIX, start));
+    }
+
+    // Finishes archiving already queued, so the directory is left in its final layout.
+    @Override
+    public void close() {
+        writer.close();
+        archiver.shutdown();
+        try {
+            archiver.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,317 @@
+package securebank;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.Lock;
+import java.util.stream.Stream;
+
+// N independent DataStores under data/shard-k/, each with its own files, snapshot lock and
+// writer threads, so unrelated writes no longer share a journal or a disk queue. Users are
+// routed by username and accounts, with their balance journal and ledger, by accountId.
+// data/shards.txt records N; it is written last when a store is created or resharded.
+//
+// A transfer between accounts on different shards cannot be one journal record: the debit and
+// the credit are journaled on their own shards (DELTA records) and the DEBIT/CREDIT ledger
+// records share the txId. Both legs apply in memory under both shards' snapshot read locks,
+// taken in shard order as BalanceSnapshot takes the write locks, so a snapshot sees neither
+// leg or both. The future completes once both are durable, but a crash inside one fsync
+// interval can keep one leg without the other; the unmatched txId in the ledgers identifies
+// such a transfer.
+public class ShardedDataStore implements BankStore {
+    static final String MARKER_FILE = "shards.txt";
+
+    private final DataStore[] shards;
+
+    public static boolean isPresent(Path baseDir) {
+        return Files.exists(baseDir.resolve(MARKER_FILE));
+    }
+
+    static Path shardDir(Path baseDir, int shard) {
+        return baseDir.resolve("shard-" + shard);
+    }
+
+    // Opens an existing sharded directory.
+    public ShardedDataStore(Path baseDir) throws IOException {
+        this(baseDir, readShardCount(baseDir), FsyncPolicy.fromSystemProperty());
+    }
+
+    public ShardedDataStore(Path baseDir, int count) throws IOException {
+        this(baseDir, count, FsyncPolicy.fromSystemProperty());
+    }
+
+    public ShardedDataStore(Path baseDir, int count, FsyncPolicy fsyncPolicy) throws IOException {
+        if (count < 1) throw new IllegalArgumentException("Shard count must be >= 1");
+        if (isPresent(baseDir) && readShardCount(baseDir) != count) {
+            throw new IOException(baseDir + " has " + readShardCount(baseDir) + " shards, not " + count + "; use Resharder");
+        }
+        shards = new DataStore[count];
+        try {
+            for (int i = 0; i < count; i++) shards[i] = new DataStore(shardDir(baseDir, i).toString(), fsyncPolicy);
+        } catch (IOException | RuntimeException e) {
+            for (DataStore s : shards) {
+                if (s == null) continue;
+                try {
+                    s.close();
+                } catch (IOException ignored) {
+                    // already failing; report the original error
+                }
+            }
+            throw e;
+        }
+        if (!isPresent(baseDir)) writeShardCount(baseDir, count);
+    }
+
+    static int readShardCount(Path baseDir) throws IOException {
+        try {
+            return Integer.parseInt(new String(Files.readAllBytes(baseDir.resolve(MARKER_FILE)), StandardCharsets.UTF_8).trim());
+        } catch (NumberFormatException e) {
+            throw new IOException("Corrupt " + baseDir.resolve(MARKER_FILE));
+        }
+    }
+
+    static void writeShardCount(Path baseDir, int count) throws IOException {
+        Path tmp = baseDir.resolve(MARKER_FILE + ".tmp");
+        Files.write(tmp, (count + System.lineSeparator()).getBytes(StandardCharsets.UTF_8));
+        Files.move(tmp, baseDir.resolve(MARKER_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public int getShardCount() { return shards.length; }
+
+    private DataStore shardFor(String key) {
+        return shards[shardOf(key)];
+    }
+
+    private int shardOf(String key) {
+        return Math.floorMod(key.hashCode(), shards.length);
+    }
+
+    // Users
+
+    public boolean usernameExists(String username) { return shardFor(username).usernameExists(username); }
+
+    public CompletableFuture<Boolean> addUser(User user) { return shardFor(user.getUsername()).addUser(user); }
+
+    public User getUser(String username) { return shardFor(username).getUser(username); }
+
+    public CompletableFuture<Void> updateUser(User user) { return shardFor(user.getUsername()).updateUser(user); }
+
+    public Collection<User> getUsers() {
+        List<User> out = new ArrayList<>();
+        for (DataStore s : shards) out.addAll(s.getUsers());
+        return out;
+    }
+
+    // Accounts
+
+    public CompletableFuture<Void> addAccount(Account account) { return shardFor(account.getAccountId()).addAccount(account); }
+
+    public Account getAccount(String accountId) { return shardFor(accountId).getAccount(accountId); }
+
+    // A user's accounts are spread over the shards; each shard answers from its owner index.
+    public List<Account> getAccountsForUser(String username) {
+        List<Account> list = new ArrayList<>();
+        for (DataStore s : shards) list.addAll(s.getAccountsForUser(username));
+        list.sort(Comparator.comparing(Account::getAccountId));
+        return list;
+    }
+
+    public Collection<Account> getAccounts() {
+        List<Account> out = new ArrayList<>();
+        for (DataStore s : shards) out.addAll(s.getAccounts());
+        return out;
+    }
+
+    public CompletableFuture<Void> deposit(Account account, long cents) {
+        return shardFor(account.getAccountId()).deposit(account, cents);
+    }
+
+    public CompletableFuture<Boolean> withdraw(Account account, long cents) {
+        return shardFor(account.getAccountId()).withdraw(account, cents);
+    }
+
+    // Idempotency keys are remembered by the account's shard.
+    public CompletableFuture<String> deposit(Account account, long cents, String idempotencyKey) {
+        return shardFor(account.getAccountId()).deposit(account, cents, idempotencyKey);
+    }
+
+    public CompletableFuture<String> withdraw(Account account, long cents, String idempotencyKey) {
+        return shardFor(account.getAccountId()).withdraw(account, cents, idempotencyKey);
+    }
+
+    public CompletableFuture<Boolean> transfer(Account from, Account to, long cents, String txId) {
+        if (from.getAccountId().equals(to.getAccountId())) throw new IllegalArgumentException("Cannot transfer to the same account");
+        int source = shardOf(from.getAccountId());
+        int target = shardOf(to.getAccountId());
+        if (source == target) return shards[source].transfer(from, to, cents, txId);
+        return crossShardTransfer(source, from, target, to, cents, txId);
+    }
+
+    private CompletableFuture<Boolean> crossShardTransfer(int sourceShard, Account from, int targetShard, Account to,
+                                                          long cents, String txId) {
+        DataStore source = shards[sourceShard], target = shards[targetShard];
+        Lock first = shards[Math.min(sourceShard, targetShard)].snapshotReadLock();
+        Lock second = shards[Math.max(sourceShard, targetShard)].snapshotReadLock();
+        CompletableFuture<Boolean> debited;
+        CompletableFuture<Void> credited;
+        first.lock();
+        second.lock();
+        try {
+            debited = source.withdraw(from, cents);
+            if (debited.isDone() && !debited.join()) return debited;
+            try {
+                credited = target.deposit(to, cents);
+            } catch (ArithmeticException overflow) {
+                source.deposit(from, cents); // put the debit back
+                throw overflow;
+            }
+        } finally {
+            second.unlock();
+            first.unlock();
+        }
+        TransactionRecord debit = TransactionRecord.create(txId, from.getAccountId(), "DEBIT", cents);
+        TransactionRecord credit = new TransactionRecord(txId, to.getAccountId(), "CREDIT", cents, debit.getEpochMillis());
+        return CompletableFuture.allOf(debited, credited, source.addTransaction(debit), target.addTransaction(credit))
+                .thenApply(v -> true);
+    }
+
+    // Walks the chunk in order, collecting each shard's records; before a transfer whose legs
+    // are on different shards the collected records are applied, so every account still sees
+    // its records in chunk order.
+    public CompletableFuture<Void> applyBatch(List<TransactionRecord> records, String[] rejections) {
+        List<CompletableFuture<?>> pending = new ArrayList<>();
+        List<List<Integer>> byShard = new ArrayList<>(shards.length);
+        for (int s = 0; s < shards.length; s++) byShard.add(new ArrayList<>());
+        for (int i = 0; i < records.size(); i++) {
+            TransactionRecord t = records.get(i);
+            int shard = shardOf(t.getAccountId());
+            boolean pair = t.getType().equals("DEBIT") && i + 1 < records.size() && records.get(i + 1).getType().equals("CREDIT");
+            if (!pair) {
+                byShard.get(shard).add(i);
+                continue;
+            }
+            TransactionRecord credit = records.get(i + 1);
+            int creditShard = shardOf(credit.getAccountId());
+            if (creditShard == shard) {
+                byShard.get(shard).add(i);
+                byShard.get(shard).add(i + 1);
+                i++;
+                continue;
+            }
+            applyCollected(records, rejections, byShard, pending);
+            Account from = shards[shard].getAccount(t.getAccountId());
+            Account to = shards[creditShard].getAccount(credit.getAccountId());
+            String why = null;
+            if (from == null) {
+                why = "no such account " + t.getAccountId();
+            } else if (to == null) {
+                why = "no such account " + credit.getAccountId();
+            } else if (t.getAmountCents() <= 0) {
+                why = "amount must be > 0";
+            } else if (credit.getAmountCents() != t.getAmountCents()) {
+                why = "credit does not match debit";
+            } else {
+                try {
+                    CompletableFuture<Boolean> moved = crossShardTransfer(shard, from, creditShard, to, t.getAmountCents(), t.getTxId());
+                    if (moved.isDone() && !moved.join()) why = "insufficient funds";
+                    pending.add(moved);
+                } catch (ArithmeticException overflow) {
+                    why = "balance would overflow";
+                }
+            }
+            rejections[i] = why;
+            rejections[i + 1] = why;
+            i++;
+        }
+        applyCollected(records, rejections, byShard, pending);
+        return CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0]));
+    }
+
+    private void applyCollected(List<TransactionRecord> records, String[] rejections, List<List<Integer>> byShard,
+                                List<CompletableFuture<?>> pending) {
+        for (int s = 0; s < shards.length; s++) {
+            List<Integer> idx = byShard.get(s);
+            if (idx.isEmpty()) continue;
+            List<TransactionRecord> sub = new ArrayList<>(idx.size());
+            for (int i : idx) sub.add(records.get(i));
+            String[] subRejections = new String[sub.size()];
+            pending.add(shards[s].applyBatch(sub, subRejections));
+            for (int j = 0; j < subRejections.length; j++) rejections[idx.get(j)] = subRejections[j];
+            idx.clear();
+        }
+    }
+
+    // Transactions
+
+    public CompletableFuture<Void> addTransaction(TransactionRecord tr) {
+        return shardFor(tr.getAccountId()).addTransaction(tr);
+    }
+
+    public List<TransactionRecord> getTransactionsForAccount(String accountId) {
+        return shardFor(accountId).getTransactionsForAccount(accountId);
+    }
+
+    public List<TransactionRecord> getTransactionsForAccount(String accountId, int offset, int limit) {
+        return shardFor(accountId).getTransactionsForAccount(accountId, offset, limit);
+    }
+
+    public List<TransactionRecord> getTransactionsBetween(String accountId, long fromMillis, long toMillis, int offset, int limit) {
+        return shardFor(accountId).getTransactionsBetween(accountId, fromMillis, toMillis, offset, limit);
+    }
+
+    public Stream<TransactionRecord> streamTransactionsForAccount(String accountId) {
+        return shardFor(accountId).streamTransactionsForAccount(accountId);
+    }
+
+    public int countTransactionsForAccount(String accountId) {
+        return shardFor(accountId).countTransactionsForAccount(accountId);
+    }
+
+    public AccountStatement getStatement(String accountId) {
+        return shardFor(accountId).getStatement(accountId);
+    }
+
+    // Point in time
+
+    public BalanceSnapshot snapshot() {
+        return BalanceSnapshot.open(shards);
+    }
+
+    public long getBalanceAsOf(String accountId, long epochMillis) {
+        return shardFor(accountId).getBalanceAsOf(accountId, epochMillis);
+    }
+
+    // Lifecycle
+
+    public String getLoadReport() {
+        StringBuilder b = new StringBuilder();
+        for (int i = 0; i < shards.length; i++) {
+            if (i > 0) b.append(System.lineSeparator());
+            b.append("shard-").append(i).append(": ").append(shards[i].getLoadReport());
+        }
+        return b.toString();
+    }
+
+    public void persistAccounts() throws IOException {
+        for (DataStore s : shards) s.persistAccounts();
+    }
+
+    public void close() throws IOException {
+        IOException first = null;
+        for (DataStore s : shards) {
+            try {
+                s.close();
+            } catch (IOException e) {
+                if (first == null) first = e;
+            }
+        }
+        if (first != null) throw first;
+    }
+}
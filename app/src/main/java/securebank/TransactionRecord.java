@@ -0,0 +1,67 @@
+package securebank;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+
+public class TransactionRecord {
+    private final String txId; // simple unique id
+    private final String accountId;
+    private final String type; // DEPOSIT, WITHDRAW, or DEBIT/CREDIT for the two legs of a transfer
+    private final long amountCents;
+    // ISO-8601 and epoch millis; whichever one the record was built from is converted
+    // to the other only when asked for (binary storage holds millis, text holds ISO)
+    private String timestamp;
+    private long epochMillis;
+
+    public TransactionRecord(String txId, String accountId, String type, long amountCents, String timestamp) {
+        this.txId = txId;
+        this.accountId = accountId;
+        this.type = type;
+        this.amountCents = amountCents;
+        this.timestamp = timestamp;
+        this.epochMillis = Long.MIN_VALUE;
+    }
+
+    public TransactionRecord(String txId, String accountId, String type, long amountCents, long epochMillis) {
+        this.txId = txId;
+        this.accountId = accountId;
+        this.type = type;
+        this.amountCents = amountCents;
+        this.epochMillis = epochMillis;
+    }
+
+    public String getTxId() { return txId; }
+    public String getAccountId() { return accountId; }
+    public String getType() { return type; }
+    public long getAmountCents() { return amountCents; }
+    public BigDecimal getAmount() { return Money.toBigDecimal(amountCents); }
+    public String getTimestamp() {
+        if (timestamp == null) timestamp = DateTimeFormatter.ISO_INSTANT.format(Instant.ofEpochMilli(epochMillis));
+        return timestamp;
+    }
+    public long getEpochMillis() {
+        if (epochMillis == Long.MIN_VALUE) epochMillis = Instant.parse(timestamp).toEpochMilli();
+        return epochMillis;
+    }
+
+    // Millisecond clock, like the binary ledger; the ISO form is only built if a text file asks for it.
+    public static TransactionRecord create(String txId, String accountId, String type, long amountCents) {
+        return new TransactionRecord(txId, accountId, type, amountCents, System.currentTimeMillis());
+    }
+
+    public String toStorageString() {
+        return String.join("|", txId, accountId, type, Money.format(amountCents), getTimestamp());
+    }
+
+    public static TransactionRecord fromStorageString(String line) {
+        String[] p = line.split("\\|", -1);
+        if (p.length != 5) return null;
+        return new TransactionRecord(p[0], p[1], p[2], Money.parseCents(p[3]), p[4]);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s | %s | %s | %s", getTimestamp(), type, Money.format(amountCents), accountId);
+    }
+}
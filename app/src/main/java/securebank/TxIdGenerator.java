@@ -0,0 +1,26 @@
+package securebank;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Transaction ids without locks or randomness: "TX" + 13 base-36 digits of a hybrid logical
+// clock, wall-clock millis << 10 plus a counter. Every id is larger than the previous one,
+// even within a millisecond, and fixed width, so ids sort in issue order and fit the
+// 24-byte txId field of the binary ledger. A new process starts from the wall clock and
+// cannot repeat ids of an earlier run unless that run issued more than ~1M ids/s for long
+// enough to get ahead of the clock, or the clock is stepped back across a restart.
+public final class TxIdGenerator {
+    private static final int COUNTER_BITS = 10;
+    private static final int DIGITS = 13; // Long.MAX_VALUE in base 36
+    private static final AtomicLong LAST = new AtomicLong();
+
+    private TxIdGenerator() {}
+
+    public static String next() {
+        long now = System.currentTimeMillis() << COUNTER_BITS;
+        long id = LAST.accumulateAndGet(now, (prev, clock) -> Math.max(prev + 1, clock));
+        String digits = Long.toString(id, 36);
+        StringBuilder b = new StringBuilder(2 + DIGITS).append("TX");
+        for (int i = digits.length(); i < DIGITS; i++) b.append('0');
+        return b.append(digits).toString();
+    }
+}
@@ -0,0 +1,70 @@
+package securebank;
+
+import java.util.Objects;
+
+public class User {
+    private final String username;
+    private final String passwordHash; // base64
+    private final String salt; // base64
+    private final String algorithm; // KDF the hash was made with
+    private final int iterations;
+
+    public User(String username, String passwordHash, String salt) {
+        this(username, passwordHash, salt, Securityutil.LEGACY_ALGORITHM, Securityutil.LEGACY_ITERATIONS);
+    }
+
+    public User(String username, String passwordHash, String salt, String algorithm, int iterations) {
+        this.username = username;
+        this.passwordHash = passwordHash;
+        this.salt = salt;
+        this.algorithm = algorithm;
+        this.iterations = iterations;
+    }
+
+    public String getUsername() { return username; }
+    public String getPasswordHash() { return passwordHash; }
+    public String getSalt() { return salt; }
+    public String getAlgorithm() { return algorithm; }
+    public int getIterations() { return iterations; }
+
+    // True when the hash was made with weaker or different KDF settings than new hashes use.
+    public boolean needsRehash() {
+        return !algorithm.equals(Securityutil.ALGORITHM) || iterations < Securityutil.ITERATIONS;
+    }
+
+    // CSV: username|passwordHash|salt|algorithm|iterations
+    // (lines with only the first three fields predate per-user KDF settings)
+    public String toStorageString() {
+        return String.join("|", escape(username), passwordHash, salt, algorithm, Integer.toString(iterations));
+    }
+
+    public static User fromStorageString(String line) {
+        String[] parts = line.split("\\|", -1);
+        if (parts.length == 3) return new User(unescape(parts[0]), parts[1], parts[2]);
+        if (parts.length != 5) return null;
+        try {
+            return new User(unescape(parts[0]), parts[1], parts[2], parts[3], Integer.parseInt(parts[4]));
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+    }
+
+    private static String escape(String s) {
+        return s.replace("|", "%7C");
+    }
+    private static String unescape(String s) {
+        return s.replace("%7C", "|");
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof User)) return false;
+        User u = (User) o;
+        return username.equals(u.username);
+    }
+    @Override
+    public int hashCode() {
+        return Objects.hash(username);
+    }
+}
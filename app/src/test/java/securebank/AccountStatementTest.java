@@ -0,0 +1,99 @@
+package securebank;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AccountStatementTest {
+    @TempDir
+    Path dir;
+
+    private static long millis(int year, int month, int day) {
+        return LocalDate.of(year, month, day).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli() + 3_600_000;
+    }
+
+    // Every type of record over several days and months, including a day's second record.
+    private static AccountStatement sample() {
+        AccountStatement st = new AccountStatement("acct-1");
+        st.add(new TransactionRecord("t1", "acct-1", "DEPOSIT", 10_000, millis(2023, 12, 31)));
+        st.add(new TransactionRecord("t2", "acct-1", "WITHDRAW", 2_500, millis(2024, 1, 1)));
+        st.add(new TransactionRecord("t3", "acct-1", "CREDIT", 700, millis(2024, 1, 1)));
+        st.add(new TransactionRecord("t4", "acct-1", "DEBIT", 300, millis(2024, 2, 29)));
+        st.add(new TransactionRecord("t5", "acct-1", "DEPOSIT", 1, millis(2024, 1, 15))); // out of time order
+        return st;
+    }
+
+    @Test
+    void storageLineRoundTrips() {
+        AccountStatement st = sample();
+        AccountStatement back = AccountStatement.fromStorageString(st.toStorageString());
+        assertNotNull(back);
+        assertEquals(st.toStorageString(), back.toStorageString());
+        assertEquals("acct-1", back.getAccountId());
+        assertEquals(5, back.records());
+        assertEquals(st.lifetime().toString(), back.lifetime().toString());
+        assertEquals(st.monthly().toString(), back.monthly().toString());
+        LocalDate from = LocalDate.of(2023, 12, 1), to = LocalDate.of(2024, 3, 1);
+        assertEquals(st.daily(from, to).toString(), back.daily(from, to).toString());
+        assertEquals(10_000 - 2_500 + 700 - 300 + 1, back.lifetime().net());
+        assertEquals(2, back.day(LocalDate.of(2024, 1, 1)).count);
+        assertEquals(-2_500 + 700 + 1, back.month(YearMonth.of(2024, 1)).net());
+        assertEquals(10_000 - 2_500 + 700 + 1, back.before(LocalDate.of(2024, 2, 29)).net());
+    }
+
+    @Test
+    void emptyStatementRoundTrips() {
+        AccountStatement back = AccountStatement.fromStorageString(new AccountStatement("acct-2").toStorageString());
+        assertNotNull(back);
+        assertEquals(0, back.records());
+        assertTrue(back.monthly().isEmpty());
+    }
+
+    // A line cut short anywhere, as a crash mid-write leaves it, is refused rather than read
+    // as a statement with smaller sums.
+    @Test
+    void truncatedLineIsRejected() {
+        String line = sample().toStorageString();
+        for (int cut = 0; cut < line.length(); cut++) {
+            assertNull(AccountStatement.fromStorageString(line.substring(0, cut)), "accepted a line cut at " + cut);
+        }
+    }
+
+    // Statements written by one DataStore come back the same in the next, and a torn final
+    // line in statements.txt is passed over: the account's previous line stands.
+    @Test
+    void statementsSurviveARestartWithATornFinalLine() throws Exception {
+        Path data = dir.resolve("data");
+        DataStore ds = new DataStore(data.toString(), FsyncPolicy.osManaged());
+        Account a = new Account("a1", "owner", 10_000), b = new Account("b1", "owner", 0);
+        ds.addAccount(a).join();
+        ds.addAccount(b).join();
+        for (int i = 1; i <= 5; i++) ds.transfer(a, b, 100 * i, TxIdGenerator.next()).join();
+        String before = ds.getStatement("a1").toStorageString();
+        ds.close();
+
+        Path file = data.resolve("statements.txt");
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        String last = lines.get(lines.size() - 1);
+        Files.write(file, last.substring(0, last.length() / 2).getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        ds = new DataStore(data.toString(), FsyncPolicy.osManaged());
+        try {
+            assertEquals(before, ds.getStatement("a1").toStorageString());
+            assertEquals(-1_500, ds.getStatement("a1").lifetime().net());
+            assertEquals(1_500, ds.getStatement("b1").lifetime().net());
+        } finally {
+            ds.close();
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package securebank;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AccountVersionTest {
+    private static final int ACCOUNTS = 6;
+    private static final long START = 100_000;
+
+    @TempDir
+    Path dir;
+    private DataStore ds;
+    private Account[] accounts;
+
+    @BeforeEach
+    void open() throws Exception {
+        ds = new DataStore(dir.toString(), FsyncPolicy.osManaged());
+        accounts = new Account[ACCOUNTS];
+        for (int i = 0; i < ACCOUNTS; i++) {
+            accounts[i] = new Account("acct-" + i, "owner", START);
+            ds.addAccount(accounts[i]).join();
+        }
+    }
+
+    @AfterEach
+    void close() throws Exception {
+        ds.close();
+    }
+
+    private static int chainLength(Account a) {
+        int n = 0;
+        for (Account.Version v = a.current(); v != null; v = v.prev) n++;
+        return n;
+    }
+
+    private static Map<String, Long> balances(BalanceSnapshot s) {
+        Map<String, Long> out = new HashMap<>();
+        s.forEach((a, b) -> out.put(a.getAccountId(), b));
+        return out;
+    }
+
+    // Snapshots opened and closed at staggered times while transfers run: each one reads the
+    // same balances however long it stays open and however many transfers pass it.
+    @Test
+    void overlappingSnapshotsStayFixedUnderTransfers() throws Exception {
+        AtomicBoolean stop = new AtomicBoolean();
+        List<Thread> writers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            writers.add(new Thread(() -> {
+                ThreadLocalRandom r = ThreadLocalRandom.current();
+                while (!stop.get()) {
+                    int from = r.nextInt(ACCOUNTS), to = (from + 1 + r.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+                    ds.transfer(accounts[from], accounts[to], 1 + r.nextInt(5_000), TxIdGenerator.next());
+                }
+            }));
+        }
+        writers.forEach(Thread::start);
+        try {
+            for (int round = 0; round < 50; round++) {
+                BalanceSnapshot older = ds.snapshot();
+                Map<String, Long> olderFirst = balances(older);
+                Thread.sleep(2);
+                try (BalanceSnapshot newer = ds.snapshot()) {
+                    Map<String, Long> newerFirst = balances(newer);
+                    Thread.sleep(2);
+                    older.close(); // the newer one outlives it
+                    Thread.sleep(2);
+                    assertEquals(newerFirst, balances(newer));
+                    assertEquals(ACCOUNTS * START, newer.getTotalCents());
+                }
+                assertEquals(ACCOUNTS * START, olderFirst.values().stream().mapToLong(Long::longValue).sum());
+                assertThrows(IllegalStateException.class, older::getTotalCents);
+            }
+        } finally {
+            stop.set(true);
+            for (Thread t : writers) t.join();
+        }
+        long total = 0;
+        for (Account a : accounts) total += a.getBalanceCents();
+        assertEquals(ACCOUNTS * START, total);
+        // every version a writer made was stamped; none is left PENDING
+        for (Account a : accounts) {
+            for (Account.Version v = a.current(); v != null; v = v.prev) assertNotEquals(Account.Version.PENDING, v.seq);
+        }
+    }
+
+    // Superseded versions are kept only back to the oldest open snapshot's, and dropped by the
+    // first change after the last snapshot closes.
+    @Test
+    void versionChainsAreTruncatedWhenSnapshotsClose() {
+        Account a = accounts[0], b = accounts[1];
+        for (int i = 0; i < 10; i++) ds.transfer(a, b, 1, TxIdGenerator.next()).join();
+        assertEquals(1, chainLength(a), "no snapshot open, no history kept");
+
+        BalanceSnapshot first = ds.snapshot();
+        for (int i = 0; i < 10; i++) ds.transfer(a, b, 1, TxIdGenerator.next()).join();
+        assertEquals(11, chainLength(a), "ten changes plus the version the snapshot reads");
+        BalanceSnapshot second = ds.snapshot();
+        for (int i = 0; i < 5; i++) ds.transfer(a, b, 1, TxIdGenerator.next()).join();
+        assertEquals(16, chainLength(a));
+        assertEquals(START - 10, first.getBalanceCents("acct-0"));
+        assertEquals(START - 20, second.getBalanceCents("acct-0"));
+
+        // only the second is open now; the next change cannot cut behind the head, which is newer
+        first.close();
+        ds.transfer(a, b, 1, TxIdGenerator.next()).join();
+        assertEquals(START - 20, second.getBalanceCents("acct-0"));
+        assertEquals(START + 20, second.getBalanceCents("acct-1"));
+
+        second.close();
+        ds.transfer(a, b, 1, TxIdGenerator.next()).join();
+        assertEquals(1, chainLength(a));
+        assertEquals(1, chainLength(b));
+        assertEquals(START - 27, a.getBalanceCents());
+
+        // a snapshot opened later starts a fresh chain at the current version
+        try (BalanceSnapshot third = ds.snapshot()) {
+            ds.transfer(a, b, 1, TxIdGenerator.next()).join();
+            assertEquals(2, chainLength(a));
+            assertEquals(START - 27, third.getBalanceCents("acct-0"));
+        }
+    }
+
+    // An as-of balance starts from the balance the account was opened with, before and after
+    // a restart (which recovers the opening balance from the ledger instead of storing it).
+    @Test
+    void balanceAsOfStartsFromTheOpeningBalance() throws Exception {
+        long yesterday = System.currentTimeMillis() - 86_400_000L;
+        assertEquals(START, ds.getBalanceAsOf("acct-0", System.currentTimeMillis()));
+        ds.transfer(accounts[0], accounts[1], 500, TxIdGenerator.next()).join();
+        long now = System.currentTimeMillis();
+        for (int round = 0; round < 2; round++) {
+            assertEquals(START - 500, ds.getBalanceAsOf("acct-0", now));
+            assertEquals(START + 500, ds.getBalanceAsOf("acct-1", now));
+            assertEquals(START, ds.getBalanceAsOf("acct-0", yesterday));
+            assertEquals(START, ds.getBalanceAsOf("acct-2", now));
+            ds.close();
+            ds = new DataStore(dir.toString(), FsyncPolicy.osManaged());
+        }
+    }
+
+    // Records appended to the account while the day's window is read shift its positions; the
+    // answer for a moment already past stays the same.
+    @Test
+    void balanceAsOfHoldsWhileTheAccountKeepsChanging() throws Exception {
+        Account a = accounts[0], b = accounts[1];
+        for (int i = 0; i < 40; i++) ds.transfer(a, b, 1, TxIdGenerator.next()).join();
+        long asOf = System.currentTimeMillis();
+        Thread.sleep(2);
+        AtomicBoolean stop = new AtomicBoolean();
+        Thread writer = new Thread(() -> {
+            while (!stop.get()) ds.transfer(b, a, 1, TxIdGenerator.next()).join();
+        });
+        writer.start();
+        try {
+            for (int i = 0; i < 200; i++) {
+                assertEquals(START - 40, ds.getBalanceAsOf("acct-0", asOf));
+                assertEquals(START + 40, ds.getBalanceAsOf("acct-1", asOf));
+            }
+        } finally {
+            stop.set(true);
+            writer.join();
+        }
+    }
+}
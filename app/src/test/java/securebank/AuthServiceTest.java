@@ -0,0 +1,196 @@
+package securebank;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AuthServiceTest {
+    @TempDir
+    Path dir;
+    private DataStore ds;
+    private PasswordHasher hasher;
+    private AuthService auth;
+
+    @BeforeEach
+    void open() throws Exception {
+        ds = new DataStore(dir.resolve("data").toString(), FsyncPolicy.osManaged());
+        hasher = new PasswordHasher(2, 16);
+        auth = new AuthService(ds, hasher);
+    }
+
+    @AfterEach
+    void close() throws Exception {
+        hasher.shutdown();
+        ds.close();
+    }
+
+    // "x\nvictim" used to land in users.txt as two lines, the second one a user named "victim".
+    @Test
+    void refusesUsernamesThatCannotBeStored() throws Exception {
+        for (String name : new String[] { "x\nvictim", "x\rvictim", "a|b", "a%7Cb", "tab\tname", "n\0ul", " ", "", "   ",
+                "u".repeat(Securityutil.MAX_USERNAME_LENGTH + 1) }) {
+            assertThrows(IllegalArgumentException.class, () -> auth.register(name, "secret1".toCharArray()), name);
+        }
+        assertTrue(auth.register("  alice  ", "secret1".toCharArray()));
+        assertTrue(auth.register("u".repeat(Securityutil.MAX_USERNAME_LENGTH), "secret1".toCharArray()));
+        assertFalse(auth.register("bob", "short".toCharArray()));
+        ds.close();
+
+        ds = new DataStore(dir.resolve("data").toString(), FsyncPolicy.osManaged());
+        assertEquals(2, Files.readAllLines(dir.resolve("data").resolve("users.txt")).size());
+        assertNotNull(ds.getUser("alice"));
+        assertNull(ds.getUser("victim"));
+    }
+
+    @Test
+    void racingRegistrationsHaveOneWinner() throws Exception {
+        int racers = 6;
+        ExecutorService pool = Executors.newFixedThreadPool(racers);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < racers; i++) {
+            char[] password = ("password" + i).toCharArray();
+            results.add(pool.submit(() -> {
+                start.await();
+                return auth.register("carol", password);
+            }));
+        }
+        start.countDown();
+        int winner = -1;
+        for (int i = 0; i < racers; i++) {
+            if (results.get(i).get()) {
+                assertEquals(-1, winner, "two registrations of carol succeeded");
+                winner = i;
+            }
+        }
+        pool.shutdown();
+        assertNotEquals(-1, winner);
+        // the stored hash is the winner's, so only the winner can log in
+        User stored = ds.getUser("carol");
+        for (int i = 0; i < racers; i++) assertEquals(i == winner, hasher.verify(stored, ("password" + i).toCharArray()), "password" + i);
+    }
+
+    @Test
+    void addUserKeepsTheFirstUser() throws Exception {
+        int threads = 8;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            String hash = "hash" + i;
+            results.add(pool.submit(() -> {
+                start.await();
+                return ds.addUser(new User("dave", hash, "salt")).join();
+            }));
+        }
+        start.countDown();
+        String winner = null;
+        for (int i = 0; i < threads; i++) {
+            if (results.get(i).get()) {
+                assertNull(winner);
+                winner = "hash" + i;
+            }
+        }
+        pool.shutdown();
+        assertEquals(winner, ds.getUser("dave").getPasswordHash());
+        ds.close();
+
+        ds = new DataStore(dir.resolve("data").toString(), FsyncPolicy.osManaged());
+        assertEquals(1, Files.readAllLines(dir.resolve("data").resolve("users.txt")).size());
+        assertEquals(winner, ds.getUser("dave").getPasswordHash());
+    }
+
+    // Counts KDF runs for logins; each is tens of ms of CPU, everything else in a login is a map lookup.
+    private static final class CountingHasher extends PasswordHasher {
+        final AtomicInteger verified = new AtomicInteger();
+
+        CountingHasher() {
+            super(1, 4);
+        }
+
+        @Override
+        public boolean verify(User user, char[] password) throws Exception {
+            verified.incrementAndGet();
+            return super.verify(user, password);
+        }
+    }
+
+    // Runs attempt(i) as fast as one thread can for the given time; returns the attempts made.
+    private static long flood(long millis, AttemptSource attempt) throws Exception {
+        long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+        long n = 0;
+        while (System.nanoTime() < end) {
+            try {
+                attempt.run(n);
+            } catch (RateLimitedException expected) {
+                // the point of the flood
+            }
+            n++;
+        }
+        return n;
+    }
+
+    private interface AttemptSource {
+        void run(long i) throws Exception;
+    }
+
+    // Guessing spread over many real users: each user's bucket allows a burst, but the global
+    // KDF bucket caps the hashing, and so the CPU, at its rate however many attempts arrive.
+    @Test
+    void loginFloodRunsTheKdfAtTheBucketRate() throws Exception {
+        String salt = Securityutil.generateSaltBase64();
+        String hash = Securityutil.hashPasswordBase64("right-password".toCharArray(), salt, Securityutil.ALGORITHM, Securityutil.ITERATIONS);
+        int users = 200;
+        for (int i = 0; i < users; i++) ds.addUser(new User("user" + i, hash, salt, Securityutil.ALGORITHM, Securityutil.ITERATIONS)).join();
+        CountingHasher counting = new CountingHasher();
+        try {
+            AuthService flooded = new AuthService(ds, counting);
+            long start = System.nanoTime();
+            long attempts = flood(2_000, i -> flooded.login("user" + (i % users), "wrong-password".toCharArray()));
+            double seconds = (System.nanoTime() - start) / 1e9;
+            assertTrue(attempts / seconds >= 10_000, "flood reached only " + (long) (attempts / seconds) + " attempts/s");
+            int cores = Runtime.getRuntime().availableProcessors();
+            long allowed = 10L * cores + (long) Math.ceil(5 * cores * seconds) + 1;
+            assertTrue(counting.verified.get() <= allowed, counting.verified.get() + " KDF runs for " + attempts + " attempts, allowed " + allowed);
+            assertTrue(counting.verified.get() > 0);
+        } finally {
+            counting.shutdown();
+        }
+    }
+
+    // The per-user LRU is small here; a flood of made-up usernames pushes every junk bucket out
+    // of it many times over, but the attacked user's bucket is kept and stays empty.
+    @Test
+    void junkUsernamesCannotResetAUsersLimit() throws Exception {
+        assertTrue(auth.register("target", "right-password".toCharArray()));
+        String previous = System.setProperty("bank.auth.maxTrackedUsers", "100");
+        CountingHasher counting = new CountingHasher();
+        try {
+            AuthService flooded = new AuthService(ds, counting);
+            // more junk names than the LRU holds between two tries at target
+            long attempts = flood(2_000, i -> flooded.login(i % 250 == 0 ? "target" : "junk-" + i, "wrong-password".toCharArray()));
+            assertTrue(attempts > 20 * 250, "too few tries at target: " + attempts / 250);
+            // burst 5 plus at most one refill at 5 per minute within the flood
+            assertTrue(counting.verified.get() <= 6, counting.verified.get() + " password checks for target");
+            assertThrows(RateLimitedException.class, () -> flooded.login("target", "right-password".toCharArray()));
+        } finally {
+            counting.shutdown();
+            if (previous == null) System.clearProperty("bank.auth.maxTrackedUsers");
+            else System.setProperty("bank.auth.maxTrackedUsers", previous);
+        }
+    }
+}
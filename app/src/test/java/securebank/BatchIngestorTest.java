@@ -0,0 +1,159 @@
+package securebank;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchIngestorTest {
+    @TempDir
+    Path dir;
+    private DataStore ds;
+
+    @BeforeEach
+    void open() throws Exception {
+        ds = new DataStore(dir.resolve("data").toString(), FsyncPolicy.osManaged());
+        ds.addAccount(new Account("a1", "owner", 10_000)).join();
+        ds.addAccount(new Account("a2", "owner", 0)).join();
+    }
+
+    @AfterEach
+    void close() throws Exception {
+        ds.close();
+    }
+
+    @Test
+    void rejectsAmountsTheConsoleWouldRefuse() throws Exception {
+        Path file = write("op,accountId,amount,toAccountId",
+                "deposit,a1,-99999999999999999",
+                "deposit,a1,99999999999999999",
+                "deposit,a1,1.239",
+                "deposit,a1,1e3",
+                "deposit,a1,0.00",
+                "deposit,a1,",
+                "deposit,a1,+5",
+                "deposit,a1,12.5",
+                "withdraw,a1,.5",
+                "transfer,a1,20,a2",
+                "transfer,a2,1000000,a1");
+        BatchIngestor.Report report = new BatchIngestor(ds, 2).ingest(file);
+        assertEquals(11, report.rows);
+        assertEquals(3, report.applied);
+        assertEquals(8, report.rejected);
+        assertEquals(0, report.failed);
+        assertEquals(10_000 + 1_250 - 50 - 2_000, ds.getAccount("a1").getBalanceCents());
+        assertEquals(2_000, ds.getAccount("a2").getBalanceCents());
+        List<String> rejects = Files.readAllLines(report.rejectsFile);
+        assertEquals(8, rejects.size());
+        assertTrue(rejects.get(0).startsWith("2,amount must be > 0,"));
+        assertTrue(rejects.get(1).startsWith("3,invalid amount,"));
+        assertTrue(rejects.get(2).startsWith("4,invalid amount,"));
+        assertTrue(rejects.get(3).startsWith("5,invalid amount,"));
+        assertTrue(rejects.stream().anyMatch(l -> l.startsWith("12,insufficient funds,")));
+    }
+
+    // A chunk whose apply throws is neither lost nor counted as applied.
+    @Test
+    void reportsRowsOfAChunkThatThrowsAsFailed() throws Exception {
+        BankStore failing = (BankStore) Proxy.newProxyInstance(BankStore.class.getClassLoader(), new Class<?>[] { BankStore.class },
+                (proxy, method, args) -> {
+                    if (method.getName().equals("applyBatch")) throw new IllegalStateException("disk on fire");
+                    try {
+                        return method.invoke(ds, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+        Path file = write("deposit,a1,1", "transfer,a1,2,a2", "deposit,a1,bogus");
+        BatchIngestor.Report report = new BatchIngestor(failing, 1).ingest(file);
+        assertEquals(3, report.rows);
+        assertEquals(0, report.applied);
+        assertEquals(1, report.rejected);
+        assertEquals(2, report.failed);
+        List<String> rejects = Files.readAllLines(report.rejectsFile);
+        assertEquals(3, rejects.size());
+        assertEquals(2, rejects.stream().filter(l -> l.contains("failed: java.lang.IllegalStateException: disk on fire")).count());
+        assertEquals(10_000, ds.getAccount("a1").getBalanceCents());
+        assertTrue(report.toString().contains("2 failed"));
+    }
+
+    // A transfer into another partition's account lands between that account's earlier and
+    // later rows: the withdrawal before it finds nothing, the one after it finds the money.
+    @Test
+    void ordersATransferAgainstBothAccounts() throws Exception {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            ds.addAccount(new Account("src" + i, "owner", 5_000)).join();
+            ds.addAccount(new Account("dst" + i, "owner", 0)).join();
+            lines.add("withdraw,dst" + i + ",1");
+            lines.add("transfer,src" + i + ",50,dst" + i);
+            lines.add("withdraw,dst" + i + ",50");
+            lines.add("deposit,src" + i + ",1");
+        }
+        BatchIngestor.Report report = new BatchIngestor(ds, 4).ingest(write(lines.toArray(new String[0])));
+        assertEquals(200, report.rows);
+        assertEquals(150, report.applied);
+        assertEquals(50, report.rejected);
+        for (int i = 0; i < 50; i++) {
+            assertEquals(0, ds.getAccount("dst" + i).getBalanceCents());
+            assertEquals(5_000 - 5_000 + 100, ds.getAccount("src" + i).getBalanceCents());
+        }
+        List<String> rejects = Files.readAllLines(report.rejectsFile);
+        assertEquals(50, rejects.size());
+        assertTrue(rejects.stream().allMatch(l -> l.matches("\\d+,insufficient funds,withdraw,dst\\d+,1")));
+    }
+
+    @Test
+    void reportsTheReasonTheStoreGives() throws Exception {
+        ds.addAccount(new Account("full", "owner", Long.MAX_VALUE - 10)).join();
+        BatchIngestor.Report report = new BatchIngestor(ds, 2).ingest(write("deposit,full,1", "withdraw,a2,1"));
+        assertEquals(2, report.rejected);
+        List<String> rejects = Files.readAllLines(report.rejectsFile);
+        assertTrue(rejects.contains("1,balance would overflow,deposit,full,1"));
+        assertTrue(rejects.contains("2,insufficient funds,withdraw,a2,1"));
+    }
+
+    // A chunk applied in memory whose commit then fails: its applied rows are failed, its
+    // rejected rows keep their reason, and ingest still returns the report.
+    @Test
+    void reportsRowsOfAChunkWhoseCommitFailsAsFailed() throws Exception {
+        BankStore failing = (BankStore) Proxy.newProxyInstance(BankStore.class.getClassLoader(), new Class<?>[] { BankStore.class },
+                (proxy, method, args) -> {
+                    try {
+                        Object result = method.invoke(ds, args);
+                        if (!method.getName().equals("applyBatch")) return result;
+                        return ((CompletableFuture<?>) result).thenCompose(v -> CompletableFuture.failedFuture(new IOException("disk full")));
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+        Path file = write("deposit,a1,1", "withdraw,a2,5", "transfer,a1,2,a2");
+        BatchIngestor.Report report = new BatchIngestor(failing, 1).ingest(file);
+        assertEquals(3, report.rows);
+        assertEquals(0, report.applied);
+        assertEquals(1, report.rejected);
+        assertEquals(2, report.failed);
+        List<String> rejects = Files.readAllLines(report.rejectsFile);
+        assertEquals(3, rejects.size());
+        assertTrue(rejects.contains("2,insufficient funds,withdraw,a2,5"));
+        assertEquals(2, rejects.stream().filter(l -> l.contains("failed: java.io.IOException: disk full")).count());
+    }
+
+    private Path write(String... lines) throws Exception {
+        Path file = dir.resolve("batch.csv");
+        Files.write(file, List.of(lines), StandardCharsets.UTF_8);
+        return file;
+    }
+}
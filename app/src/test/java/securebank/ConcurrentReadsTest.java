@@ -0,0 +1,144 @@
+package securebank;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Reads (getUser, getAccount, usernameExists, getAccountsForUser) take no DataStore lock, so
+// they neither wait behind a writer holding the store's monitor or the snapshot lock, nor see
+// an owner index that points at accounts they cannot resolve.
+class ConcurrentReadsTest {
+    private static final int OWNERS = 50;
+
+    @TempDir
+    Path dir;
+    private DataStore ds;
+
+    @BeforeEach
+    void open() throws Exception {
+        ds = new DataStore(dir.toString(), FsyncPolicy.osManaged());
+        for (int u = 0; u < OWNERS; u++) {
+            ds.addUser(new User(owner(u), "hash", "salt")).join();
+            ds.addAccount(new Account(owner(u) + "-0", owner(u), 1_000)).join();
+        }
+    }
+
+    @AfterEach
+    void close() throws Exception {
+        ds.close();
+    }
+
+    @Test
+    void readsDoNotWaitForHeldWriteLocks() throws Exception {
+        CountDownLatch held = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread writer = new Thread(() -> {
+            synchronized (ds) {
+                ds.snapshotWriteLock().lock();
+                try {
+                    held.countDown();
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    ds.snapshotWriteLock().unlock();
+                }
+            }
+        });
+        writer.start();
+        assertTrue(held.await(5, TimeUnit.SECONDS));
+        try {
+            assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+                for (int i = 0; i < 10_000; i++) {
+                    String owner = owner(i % OWNERS);
+                    assertTrue(ds.usernameExists(owner));
+                    assertNotNull(ds.getUser(owner));
+                    assertNotNull(ds.getAccount(owner + "-0"));
+                    assertFalse(ds.getAccountsForUser(owner).isEmpty());
+                }
+            });
+        } finally {
+            release.countDown();
+            writer.join();
+        }
+    }
+
+    // Writers open accounts, move money and take snapshots while readers walk the owner index.
+    @Test
+    void ownerIndexStaysConsistentUnderWrites() throws Exception {
+        AtomicBoolean stop = new AtomicBoolean();
+        AtomicInteger opened = new AtomicInteger();
+        List<Throwable> failures = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int w = 0; w < 2; w++) {
+            int seed = w;
+            threads.add(new Thread(() -> {
+                List<CompletableFuture<?>> pending = new ArrayList<>();
+                for (int i = 0; !stop.get(); i++) {
+                    String owner = owner((seed * 31 + i) % OWNERS);
+                    Account a = new Account(owner + "-w" + seed + "-" + i, owner, 0);
+                    pending.add(ds.addAccount(a));
+                    pending.add(ds.deposit(ds.getAccount(owner + "-0"), 1));
+                    opened.incrementAndGet();
+                }
+                pending.forEach(CompletableFuture::join);
+            }));
+        }
+        threads.add(new Thread(() -> {
+            while (!stop.get()) {
+                try {
+                    ds.persistAccounts();
+                } catch (Exception e) {
+                    synchronized (failures) {
+                        failures.add(e);
+                    }
+                }
+            }
+        }));
+        for (int r = 0; r < 2; r++) {
+            threads.add(new Thread(() -> {
+                int[] seen = new int[OWNERS];
+                while (!stop.get()) {
+                    for (int u = 0; u < OWNERS; u++) {
+                        List<Account> list = ds.getAccountsForUser(owner(u));
+                        try {
+                            assertTrue(list.size() >= seen[u], "an owner's accounts never shrink");
+                            for (Account a : list) assertEquals(owner(u), a.getOwnerUsername());
+                        } catch (Throwable t) {
+                            synchronized (failures) {
+                                failures.add(t);
+                            }
+                            return;
+                        }
+                        seen[u] = list.size();
+                    }
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        Thread.sleep(3000);
+        stop.set(true);
+        for (Thread t : threads) t.join();
+        assertEquals(List.of(), failures);
+        int total = 0;
+        for (int u = 0; u < OWNERS; u++) total += ds.getAccountsForUser(owner(u)).size();
+        assertEquals(OWNERS + opened.get(), total);
+    }
+
+    private static String owner(int u) {
+        return "user" + u;
+    }
+}
@@ -0,0 +1,82 @@
+package securebank;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DataStoreJournalTest {
+    private static final int ACCOUNTS = 5000;
+
+    @TempDir
+    Path dir;
+
+    // A deposit racing the account's creation must land after its OPEN record, or replay
+    // drops it.
+    @Test
+    void depositsRacingAccountCreationSurviveACrash() throws Exception {
+        DataStore ds = new DataStore(dir.resolve("live").toString(), FsyncPolicy.osManaged());
+        try {
+            List<CompletableFuture<?>> pending = new ArrayList<>();
+            Thread depositor = new Thread(() -> {
+                for (int i = 0; i < ACCOUNTS; i++) {
+                    Account a;
+                    while ((a = ds.getAccount(id(i))) == null) Thread.onSpinWait();
+                    CompletableFuture<Void> f = ds.deposit(a, 100);
+                    synchronized (pending) {
+                        pending.add(f);
+                    }
+                }
+            });
+            depositor.start();
+            for (int i = 0; i < ACCOUNTS; i++) {
+                CompletableFuture<Void> f = ds.addAccount(new Account(id(i), "owner", 0));
+                synchronized (pending) {
+                    pending.add(f);
+                }
+            }
+            depositor.join();
+            for (CompletableFuture<?> f : pending) f.join();
+
+            DataStore recovered = new DataStore(TestFiles.copy(dir.resolve("live"), dir.resolve("crash")).toString(), FsyncPolicy.osManaged());
+            try {
+                for (int i = 0; i < ACCOUNTS; i++) assertEquals(100, recovered.getAccount(id(i)).getBalanceCents(), id(i));
+            } finally {
+                recovered.close();
+            }
+        } finally {
+            ds.close();
+        }
+    }
+
+    @Test
+    void reopenReplaysJournalOverSnapshot() throws Exception {
+        DataStore ds = new DataStore(dir.resolve("live").toString(), FsyncPolicy.osManaged());
+        try {
+            Account a = new Account("a", "owner", 1_000);
+            ds.addAccount(a).join();
+            ds.persistAccounts();
+            ds.deposit(a, 250).join();
+            assertTrue(ds.withdraw(a, 50).join());
+            assertFalse(ds.withdraw(a, 10_000).join());
+
+            DataStore recovered = new DataStore(TestFiles.copy(dir.resolve("live"), dir.resolve("crash")).toString(), FsyncPolicy.osManaged());
+            try {
+                assertEquals(1_200, recovered.getAccount("a").getBalanceCents());
+            } finally {
+                recovered.close();
+            }
+        } finally {
+            ds.close();
+        }
+    }
+
+    private static String id(int i) {
+        return "owner-" + i;
+    }
+}
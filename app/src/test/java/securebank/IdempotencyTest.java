@@ -0,0 +1,165 @@
+package securebank;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdempotencyTest {
+    @TempDir
+    Path dir;
+    private DataStore ds;
+    private Account alice, bob;
+
+    @BeforeEach
+    void open() throws Exception {
+        ds = new DataStore(dir.resolve("live").toString(), FsyncPolicy.osManaged());
+        alice = new Account("alice-1", "alice", 0);
+        bob = new Account("bob-1", "bob", 0);
+        ds.addAccount(alice).join();
+        ds.addAccount(bob).join();
+    }
+
+    @AfterEach
+    void close() throws Exception {
+        ds.close();
+    }
+
+    @Test
+    void retryReplaysTheFirstOutcome() {
+        String txId = ds.deposit(alice, 500, "k1").join();
+        assertNotNull(txId);
+        assertEquals(txId, ds.deposit(alice, 500, "k1").join());
+        assertEquals(500, alice.getBalanceCents());
+        assertEquals(1, ds.countTransactionsForAccount("alice-1"));
+        assertNotEquals(txId, ds.deposit(alice, 500, "k2").join(), "another key is another deposit");
+        assertEquals(1_000, alice.getBalanceCents());
+    }
+
+    // The same key on another account is another client's request, not a retry of alice's.
+    @Test
+    void keysAreScopedToTheAccount() {
+        String aliceTx = ds.deposit(alice, 500, "k1").join();
+        String bobTx = ds.deposit(bob, 700, "k1").join();
+        assertNotEquals(aliceTx, bobTx);
+        assertEquals(500, alice.getBalanceCents());
+        assertEquals(700, bob.getBalanceCents());
+    }
+
+    @Test
+    void reusedKeyForAnotherRequestIsRefused() {
+        ds.deposit(alice, 500, "k1").join();
+        assertThrows(IdempotencyConflictException.class, () -> ds.deposit(alice, 501, "k1"));
+        assertThrows(IdempotencyConflictException.class, () -> ds.withdraw(alice, 500, "k1"));
+        assertEquals(500, alice.getBalanceCents());
+    }
+
+    // A declined withdrawal keeps its key: a retry is declined too, even once funds arrive,
+    // instead of being handed a txId or applied late.
+    @Test
+    void declinedWithdrawalKeepsItsKey() {
+        assertNull(ds.withdraw(alice, 300, "w1").join());
+        ds.deposit(alice, 500, "d1").join();
+        assertNull(ds.withdraw(alice, 300, "w1").join());
+        assertEquals(500, alice.getBalanceCents());
+        assertNotNull(ds.withdraw(alice, 300, "w2").join());
+        assertEquals(200, alice.getBalanceCents());
+    }
+
+    // A request that throws before applying anything gives its key back.
+    @Test
+    void failedRequestReleasesItsKey() {
+        Account full = new Account("full-1", "alice", Long.MAX_VALUE - 10);
+        ds.addAccount(full).join();
+        assertThrows(ArithmeticException.class, () -> ds.deposit(full, 100, "big"));
+        assertThrows(ArithmeticException.class, () -> ds.deposit(full, 100, "big"), "run again, not replayed");
+        assertNotNull(ds.deposit(full, 5, "small").join());
+        assertEquals(Long.MAX_VALUE - 5, full.getBalanceCents());
+    }
+
+    // Retries racing the first request all wait for its outcome: one withdrawal, one txId,
+    // and when funds are short every one of them is declined.
+    @Test
+    void concurrentRetriesShareOneOutcome() throws Exception {
+        ds.deposit(alice, 1_000, "seed").join();
+        for (int round = 0; round < 200; round++) {
+            long cents = round % 2 == 0 ? 1 : 1_000_000;
+            String key = "race-" + round;
+            List<String> outcomes = race(8, () -> ds.withdraw(alice, cents, key).join());
+            Set<String> distinct = new HashSet<>(outcomes);
+            assertEquals(1, distinct.size(), "round " + round + ": " + distinct);
+            assertEquals(cents == 1, distinct.iterator().next() != null);
+        }
+        assertEquals(1_000 - 100, alice.getBalanceCents());
+    }
+
+    private static List<String> race(int threads, java.util.concurrent.Callable<String> call) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<String>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    return call.call();
+                }));
+            }
+            start.countDown();
+            List<String> out = new ArrayList<>();
+            for (Future<String> f : futures) out.add(f.get(10, TimeUnit.SECONDS));
+            return out;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void keysSurviveARestart() throws Exception {
+        String txId = ds.deposit(alice, 500, "k1").join();
+        ds.deposit(bob, 700, "k1").join();
+        assertNull(ds.withdraw(bob, 10_000, "w1").join());
+
+        DataStore recovered = new DataStore(TestFiles.copy(dir.resolve("live"), dir.resolve("crash")).toString(), FsyncPolicy.osManaged());
+        try {
+            Account a = recovered.getAccount("alice-1"), b = recovered.getAccount("bob-1");
+            assertEquals(txId, recovered.deposit(a, 500, "k1").join());
+            assertThrows(IdempotencyConflictException.class, () -> recovered.deposit(a, 600, "k1"));
+            assertNull(recovered.withdraw(b, 10_000, "w1").join());
+            assertEquals(500, a.getBalanceCents());
+            assertEquals(700, b.getBalanceCents());
+        } finally {
+            recovered.close();
+        }
+    }
+
+    // Claims given back do not pile up behind live ones: the eviction queue stays within twice
+    // maxKeys, and the live key is not pushed out by them.
+    @Test
+    void releasedClaimsDoNotPileUp() {
+        DedupeCache cache = new DedupeCache(TimeUnit.DAYS.toMillis(1), 100);
+        DedupeCache.Entry live = new DedupeCache.Entry("live", "DEPOSIT|1", 0);
+        assertNull(cache.putIfAbsent(live, 0));
+        cache.complete(live, "TX1");
+        for (int i = 0; i < 10_000; i++) {
+            DedupeCache.Entry e = new DedupeCache.Entry("k" + i, "DEPOSIT|1", 1);
+            assertNull(cache.putIfAbsent(e, 1));
+            cache.fail(e, new IllegalStateException("not applied"));
+            assertTrue(cache.queuedCount() <= 200, "queued " + cache.queuedCount());
+        }
+        assertEquals(1, cache.size());
+        assertSame(live, cache.get("live", 2));
+    }
+}
@@ -0,0 +1,140 @@
+package securebank;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JournalWriterTest {
+    @TempDir
+    Path dir;
+
+    // Counts the force() calls on every file it opens; opening a file named "bad*" throws.
+    private static final class Watched extends JournalWriter {
+        static final AtomicInteger forces = new AtomicInteger();
+
+        Watched(Path file, FsyncPolicy policy) throws IOException {
+            super(file, policy);
+        }
+
+        @Override
+        FileChannel open(Path file) throws IOException {
+            if (file.getFileName().toString().startsWith("bad")) throw new IllegalStateException("file system on fire");
+            return new CountingChannel(super.open(file));
+        }
+    }
+
+    @Test
+    void everyRecordForcesBeforeCompleting() throws Exception {
+        Watched.forces.set(0);
+        try (JournalWriter w = new Watched(dir.resolve("j"), FsyncPolicy.everyRecord())) {
+            w.append("a").join();
+            assertEquals(1, Watched.forces.get());
+            w.append(List.of("b", "c")).join();
+            assertEquals(2, Watched.forces.get());
+        }
+        assertEquals(List.of("a", "b", "c"), Files.readAllLines(dir.resolve("j")));
+    }
+
+    // Records wait for the interval's force, and those written within one interval share it.
+    @Test
+    void intervalForcesAtMostOncePerInterval() throws Exception {
+        Watched.forces.set(0);
+        try (JournalWriter w = new Watched(dir.resolve("j"), FsyncPolicy.parse("300ms"))) {
+            CompletableFuture<Void> first = w.append("a");
+            Thread.sleep(100);
+            assertFalse(first.isDone(), "completed before the interval's force");
+            first.get(5, TimeUnit.SECONDS);
+            assertEquals(1, Watched.forces.get());
+            List<CompletableFuture<Void>> next = new ArrayList<>();
+            for (int i = 0; i < 5; i++) next.add(w.append("b" + i));
+            CompletableFuture.allOf(next.toArray(new CompletableFuture<?>[0])).get(5, TimeUnit.SECONDS);
+            assertEquals(2, Watched.forces.get());
+        }
+        assertEquals(6, Files.readAllLines(dir.resolve("j")).size());
+    }
+
+    @Test
+    void osManagedNeverForcesUntilClose() throws Exception {
+        Watched.forces.set(0);
+        JournalWriter w = new Watched(dir.resolve("j"), FsyncPolicy.osManaged());
+        for (int i = 0; i < 10; i++) w.append("r" + i).join();
+        assertEquals(0, Watched.forces.get());
+        assertEquals(10, Files.readAllLines(dir.resolve("j")).size());
+        w.close();
+        assertEquals(1, Watched.forces.get());
+    }
+
+    // The new file is opened before the old one is closed, so a roll that cannot open it
+    // leaves the writer appending to the old file.
+    @Test
+    void rollThatCannotOpenTheNewFileKeepsTheOldOne() throws Exception {
+        try (JournalWriter w = new JournalWriter(dir.resolve("j"), FsyncPolicy.osManaged())) {
+            w.append("a").join();
+            CompletionException e = assertThrows(CompletionException.class, () -> w.roll(dir.resolve("missing/j2")).join());
+            assertTrue(e.getCause() instanceof IOException);
+            w.append("b").join();
+            assertEquals(dir.resolve("j"), w.getFile());
+        }
+        assertEquals(List.of("a", "b"), Files.readAllLines(dir.resolve("j")));
+    }
+
+    // A RuntimeException in the writer thread fails the records it was handling instead of
+    // leaving their futures hanging, and the writer keeps going.
+    @Test
+    void runtimeFailureInTheWriterFailsTheBatchAndCarriesOn() throws Exception {
+        try (JournalWriter w = new Watched(dir.resolve("j"), FsyncPolicy.everyRecord())) {
+            w.append("a").join();
+            CompletableFuture<Void> roll = w.roll(dir.resolve("bad"));
+            ExecutionException e = assertThrows(ExecutionException.class, () -> roll.get(5, TimeUnit.SECONDS));
+            assertTrue(e.getCause() instanceof IllegalStateException);
+            w.append("b").get(5, TimeUnit.SECONDS);
+        }
+        assertEquals(List.of("a", "b"), Files.readAllLines(dir.resolve("j")));
+    }
+
+    private static final class CountingChannel extends FileChannel {
+        private final FileChannel c;
+
+        CountingChannel(FileChannel c) { this.c = c; }
+
+        @Override public void force(boolean metaData) throws IOException {
+            Watched.forces.incrementAndGet();
+            c.force(metaData);
+        }
+
+        @Override public int read(ByteBuffer dst) throws IOException { return c.read(dst); }
+        @Override public long read(ByteBuffer[] dsts, int offset, int length) throws IOException { return c.read(dsts, offset, length); }
+        @Override public int write(ByteBuffer src) throws IOException { return c.write(src); }
+        @Override public long write(ByteBuffer[] srcs, int offset, int length) throws IOException { return c.write(srcs, offset, length); }
+        @Override public long position() throws IOException { return c.position(); }
+        @Override public FileChannel position(long newPosition) throws IOException { c.position(newPosition); return this; }
+        @Override public long size() throws IOException { return c.size(); }
+        @Override public FileChannel truncate(long size) throws IOException { c.truncate(size); return this; }
+        @Override public long transferTo(long position, long count, WritableByteChannel target) throws IOException { return c.transferTo(position, count, target); }
+        @Override public long transferFrom(ReadableByteChannel src, long position, long count) throws IOException { return c.transferFrom(src, position, count); }
+        @Override public int read(ByteBuffer dst, long position) throws IOException { return c.read(dst, position); }
+        @Override public int write(ByteBuffer src, long position) throws IOException { return c.write(src, position); }
+        @Override public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException { return c.map(mode, position, size); }
+        @Override public FileLock lock(long position, long size, boolean shared) throws IOException { return c.lock(position, size, shared); }
+        @Override public FileLock tryLock(long position, long size, boolean shared) throws IOException { return c.tryLock(position, size, shared); }
+        @Override protected void implCloseChannel() throws IOException { c.close(); }
+    }
+}
@@ -0,0 +1,43 @@
+package securebank;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MoneyTest {
+    @Test
+    void parsesStoredAmounts() {
+        assertEquals(1250, Money.parseCents("12.5"));
+        assertEquals(-325, Money.parseCents("-3.25"));
+        assertEquals(7, Money.parseCents(".07"));
+        assertEquals(100, Money.parseCents("+1"));
+        assertEquals(124, Money.parseCents("1.235")); // extra decimals round HALF_UP
+        assertEquals(9_999_999_999_999_999L, Money.parseCents("99999999999999.99"));
+    }
+
+    @Test
+    void overflowThrowsInsteadOfWrapping() {
+        assertThrows(ArithmeticException.class, () -> Money.parseCents("99999999999999999"));
+        assertThrows(ArithmeticException.class, () -> Money.parseCents("-99999999999999999"));
+        assertThrows(ArithmeticException.class, () -> Money.parseCents("92233720368547758.08"));
+        assertEquals(Long.MAX_VALUE, Money.parseCents("92233720368547758.07"));
+        assertEquals(1_000_000_000_000_000_00L, Money.parseCents("1000000000000000"));
+    }
+
+    @Test
+    void toCentsIsExact() {
+        assertEquals(123, Money.toCents(new BigDecimal("1.23")));
+        assertThrows(ArithmeticException.class, () -> Money.toCents(new BigDecimal("1.239")));
+        assertThrows(ArithmeticException.class, () -> Money.toCents(new BigDecimal("1e30")));
+    }
+
+    @Test
+    void formatRoundTrips() {
+        for (long c : new long[] { 0, 5, -5, 100, -12_345, Long.MAX_VALUE, Long.MIN_VALUE + 1 }) {
+            assertEquals(BigDecimal.valueOf(c, 2).toPlainString(), Money.format(c));
+            assertEquals(c, Money.parseCents(Money.format(c)));
+        }
+    }
+}
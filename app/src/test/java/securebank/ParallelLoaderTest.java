@@ -0,0 +1,92 @@
+package securebank;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Parsing in chunks must give the lines a plain sequential read gives, wherever the chunk
+// edges fall. Each file is parsed at every chunk size from 1 byte to past its length, so
+// every byte offset is tried as an edge.
+class ParallelLoaderTest {
+    @TempDir
+    Path dir;
+    private ForkJoinPool pool;
+
+    @BeforeEach
+    void open() {
+        pool = new ForkJoinPool(4);
+    }
+
+    @AfterEach
+    void close() {
+        pool.shutdown();
+    }
+
+    @Test
+    void lineStraddlingAChunkEdge() throws Exception {
+        assertSameAsSequential("short\na much longer line that spans several small chunks\n\nx\r\nlast\n");
+    }
+
+    @Test
+    void noTrailingNewline() throws Exception {
+        assertSameAsSequential("first\nsecond\nno newline at the end");
+    }
+
+    @Test
+    void fileSmallerThanOneChunk() throws Exception {
+        Path file = write("a\nb\n");
+        assertEquals(List.of("a", "b"), flatten(parse(file, ParallelLoader.CHUNK_BYTES)));
+        assertEquals(1, parse(file, ParallelLoader.CHUNK_BYTES).size());
+        assertEquals(List.of(), flatten(parse(write(""), 4)));
+    }
+
+    // 2-, 3- and 4-byte characters, so some chunk edges land inside a character.
+    @Test
+    void multiByteCharacterAtTheSplit() throws Exception {
+        assertSameAsSequential("café|12.50\n€uro|9.99\n😀😀😀\nnaïve\n");
+    }
+
+    private void assertSameAsSequential(String content) throws Exception {
+        Path file = write(content);
+        List<String> expected = sequential(content);
+        int size = content.getBytes(StandardCharsets.UTF_8).length;
+        for (int chunk = 1; chunk <= size + 1; chunk++) {
+            assertEquals(expected, flatten(parse(file, chunk)), "chunk of " + chunk + " bytes");
+        }
+    }
+
+    // What reading the file line by line gives: no terminators, no line after a final newline.
+    private static List<String> sequential(String content) {
+        List<String> lines = new ArrayList<>(Arrays.asList(content.split("\n", -1)));
+        if (lines.get(lines.size() - 1).isEmpty()) lines.remove(lines.size() - 1);
+        lines.replaceAll(l -> l.endsWith("\r") ? l.substring(0, l.length() - 1) : l);
+        return lines;
+    }
+
+    private List<List<String>> parse(Path file, long chunkBytes) throws Exception {
+        return pool.submit(() -> ParallelLoader.<List<String>>parseLines(file, chunkBytes, ArrayList::new, List::add)).get();
+    }
+
+    private static List<String> flatten(List<List<String>> chunks) {
+        List<String> out = new ArrayList<>();
+        for (List<String> c : chunks) out.addAll(c);
+        return out;
+    }
+
+    private Path write(String content) throws Exception {
+        Path file = dir.resolve("lines.txt");
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+}
@@ -0,0 +1,200 @@
+package securebank;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SegmentedLedgerTest {
+    private static final int SEGMENT_RECORDS = 500;
+    private static final long T0 = 1_700_000_000_000L;
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+    private static final long LATE = T0 + TimeUnit.DAYS.toMillis(10);
+
+    @TempDir
+    Path dir;
+
+    // A ledger and the BinaryStore that interns its names, closed together.
+    private static final class Opened implements AutoCloseable {
+        final BinaryStore names;
+        final SegmentedLedger ledger;
+
+        Opened(Path base, int hotSegments) throws IOException {
+            names = new BinaryStore(base, FsyncPolicy.osManaged(), false);
+            ledger = new SegmentedLedger(base, names, FsyncPolicy.osManaged(), SEGMENT_RECORDS, 0, hotSegments);
+        }
+
+        @Override
+        public void close() {
+            ledger.close();
+            names.close();
+        }
+    }
+
+    // 1,000 records of early-* accounts a minute apart, then 1,000 of late-* accounts ten days
+    // later, so the first two segments hold only early accounts and the next two only late ones.
+    private static List<TransactionRecord> records() {
+        List<TransactionRecord> out = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            out.add(new TransactionRecord(String.format("TXE%06d", i), "early-" + i % 7, i % 3 == 0 ? "WITHDRAW" : "DEPOSIT", 100 + i, T0 + i * MINUTE));
+        }
+        for (int i = 0; i < 1_000; i++) {
+            out.add(new TransactionRecord(String.format("TXL%06d", i), "late-" + i % 11, "DEPOSIT", 5_000 + i, LATE + i * MINUTE));
+        }
+        return out;
+    }
+
+    // in appends of 25 records, so segments seal at exactly SEGMENT_RECORDS
+    private static void fill(SegmentedLedger ledger, List<TransactionRecord> records) {
+        for (int i = 0; i < records.size(); i += 25) ledger.append(records.subList(i, i + 25)).join();
+    }
+
+    private static List<String> keys(Stream<TransactionRecord> s) {
+        return s.map(t -> String.join("|", t.getTxId(), t.getAccountId(), t.getType(), Long.toString(t.getAmountCents()),
+                Long.toString(t.getEpochMillis()))).collect(Collectors.toList());
+    }
+
+    private static List<String> accounts() {
+        List<String> out = new ArrayList<>();
+        for (int i = 0; i < 7; i++) out.add("early-" + i);
+        for (int i = 0; i < 11; i++) out.add("late-" + i);
+        out.add("nobody");
+        return out;
+    }
+
+    private static List<Path> files(Path base, String glob) throws IOException {
+        List<Path> out = new ArrayList<>();
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(base.resolve(SegmentedLedger.DIR), glob)) {
+            ds.forEach(out::add);
+        }
+        out.sort(null);
+        return out;
+    }
+
+    private Path archivedLedger() throws IOException {
+        Path base = dir.resolve("archived");
+        Files.createDirectories(base);
+        try (Opened o = new Opened(base, 0)) {
+            fill(o.ledger, records());
+        }
+        return base;
+    }
+
+    // Every lookup, reopened from disk, answers the same from .dz archives as from the plain
+    // .bin/.idx segments they replaced.
+    @Test
+    void archivedSegmentsAnswerLikePlainOnes() throws Exception {
+        Path plainBase = dir.resolve("plain");
+        Files.createDirectories(plainBase);
+        try (Opened o = new Opened(plainBase, Integer.MAX_VALUE)) {
+            fill(o.ledger, records());
+        }
+        Path archivedBase = archivedLedger();
+        assertEquals(4, files(archivedBase, "*.dz").size());
+        assertEquals(1, files(archivedBase, "*.bin").size(), "only the empty active segment stays plain");
+        assertEquals(0, files(archivedBase, "*.idx").size());
+        assertEquals(0, files(plainBase, "*.dz").size());
+
+        try (Opened plain = new Opened(plainBase, Integer.MAX_VALUE); Opened archived = new Opened(archivedBase, 0)) {
+            long week = TimeUnit.DAYS.toMillis(7);
+            for (String a : accounts()) {
+                List<String> history = keys(plain.ledger.stream(a));
+                assertEquals(history, keys(archived.ledger.stream(a)), a);
+                assertEquals(plain.ledger.count(a), archived.ledger.count(a), a);
+                assertEquals(history.size(), archived.ledger.count(a), a);
+                for (int offset : new int[] { 1, 20, 71, 143, 500 }) {
+                    assertEquals(keys(plain.ledger.stream(a, offset)), keys(archived.ledger.stream(a, offset)), a + " offset " + offset);
+                }
+                for (long from : new long[] { T0 - week, T0 + 100 * MINUTE, T0 + 777 * MINUTE, LATE - MINUTE, LATE + 333 * MINUTE }) {
+                    long to = from + 200 * MINUTE;
+                    List<String> window = keys(plain.ledger.stream(a, from, to));
+                    assertEquals(window, keys(archived.ledger.stream(a, from, to)), a + " from " + from);
+                    assertEquals(history.stream().filter(k -> {
+                        long millis = Long.parseLong(k.substring(k.lastIndexOf('|') + 1));
+                        return millis >= from && millis <= to;
+                    }).collect(Collectors.toList()), window, a + " from " + from);
+                }
+            }
+            assertTrue(keys(archived.ledger.stream("early-3")).size() > 100);
+        }
+    }
+
+    // A damaged block fails the lookups that need it with an UncheckedIOException naming the
+    // file; lookups that the segment's time range rules out never inflate it.
+    @Test
+    void corruptBlockFailsOnlyTheLookupsThatReadIt() throws Exception {
+        Path base = archivedLedger();
+        Path first = files(base, "*.dz").get(0);
+        List<String> expectedLate;
+        List<String> expectedWindow;
+        long from = T0 + 600 * MINUTE, to = T0 + 900 * MINUTE;
+        try (Opened o = new Opened(base, 0)) {
+            expectedLate = keys(o.ledger.stream("late-4"));
+            expectedWindow = keys(o.ledger.stream("early-3", from, to));
+        }
+        assertFalse(expectedWindow.isEmpty());
+        try (FileChannel ch = FileChannel.open(first, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(48);
+            ch.read(header, 0);
+            int blockCount = header.getInt(16), entryCount = header.getInt(20), bloomLongs = header.getInt(24);
+            long dataAt = 48 + bloomLongs * 8L + entryCount * 12L + (blockCount + 1) * 4L;
+            byte[] junk = new byte[(int) (ch.size() - dataAt)];
+            Arrays.fill(junk, (byte) 0x5a);
+            ch.write(ByteBuffer.wrap(junk), dataAt);
+        }
+
+        try (Opened o = new Opened(base, 0)) {
+            UncheckedIOException e = assertThrows(UncheckedIOException.class, () -> keys(o.ledger.stream("early-3")));
+            assertTrue(e.getMessage().contains(first.getFileName().toString()), e.getMessage());
+            // the corrupt segment ends at T0 + 499 minutes
+            assertEquals(expectedWindow, keys(o.ledger.stream("early-3", from, to)));
+            assertEquals(expectedLate, keys(o.ledger.stream("late-4")));
+            assertEquals(expectedLate.size(), o.ledger.count("late-4"));
+        }
+    }
+
+    // The bloom filter keeps lookups of accounts a segment does not hold away from its index:
+    // the first segment's index is rewritten to claim every entry for late-4, which the filter
+    // built from the real accounts rules out, so late-4's history is unchanged.
+    @Test
+    void bloomFilterSkipsSegmentsWithoutTheAccount() throws Exception {
+        Path base = archivedLedger();
+        Path first = files(base, "*.dz").get(0);
+        List<String> expectedLate;
+        int lateRef;
+        try (Opened o = new Opened(base, 0)) {
+            expectedLate = keys(o.ledger.stream("late-4"));
+            lateRef = o.names.refIfPresent("late-4");
+        }
+        try (FileChannel ch = FileChannel.open(first, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(48);
+            ch.read(header, 0);
+            int entryCount = header.getInt(20), bloomLongs = header.getInt(24);
+            ByteBuffer forged = ByteBuffer.allocate(entryCount * 12);
+            for (int i = 0; i < entryCount; i++) forged.putInt(lateRef).putInt(0).putInt(10);
+            forged.flip();
+            ch.write(forged, 48 + bloomLongs * 8L);
+        }
+        try (Opened o = new Opened(base, 0)) {
+            assertEquals(expectedLate, keys(o.ledger.stream("late-4")));
+            assertEquals(expectedLate.size(), o.ledger.count("late-4"));
+            // an account the filter lets through does read the forged index, which no longer lists it
+            assertEquals(List.of(), keys(o.ledger.stream("early-3", T0, T0 + 499 * MINUTE)));
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package securebank;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.stream.Stream;
+
+// Crash images for recovery tests: a copy of a store's directory taken while it is still
+// open, with every awaited write already handed to the OS, is what a restart after a kill sees.
+final class TestFiles {
+    private TestFiles() {}
+
+    static Path copy(Path from, Path to) throws IOException {
+        try (Stream<Path> s = Files.walk(from)) {
+            for (Path p : (Iterable<Path>) s::iterator) {
+                Path t = to.resolve(from.relativize(p).toString());
+                if (Files.isDirectory(p)) Files.createDirectories(t);
+                else Files.copy(p, t, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        return to;
+    }
+}
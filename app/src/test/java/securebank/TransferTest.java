@@ -0,0 +1,149 @@
+package securebank;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransferTest {
+    private static final int ACCOUNTS = 8;
+    private static final long START = 10_000;
+    private static final int THREADS = 8;
+    private static final int TRANSFERS_PER_THREAD = 20_000;
+
+    @TempDir
+    Path dir;
+
+    // Few accounts and many threads, so transfers keep crossing in opposite directions and
+    // some run out of funds; money is neither created nor lost, and nothing deadlocks.
+    @Test
+    void concurrentTransfersConserveTheTotal() throws Exception {
+        DataStore ds = new DataStore(dir.resolve("live").toString(), FsyncPolicy.osManaged());
+        try {
+            Account[] accounts = new Account[ACCOUNTS];
+            for (int i = 0; i < ACCOUNTS; i++) {
+                accounts[i] = new Account("acct-" + i, "owner", START);
+                ds.addAccount(accounts[i]).join();
+            }
+            AtomicLong moved = new AtomicLong(), refused = new AtomicLong();
+            List<Thread> threads = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                threads.add(new Thread(() -> {
+                    ThreadLocalRandom r = ThreadLocalRandom.current();
+                    List<CompletableFuture<Boolean>> pending = new ArrayList<>();
+                    for (int i = 0; i < TRANSFERS_PER_THREAD; i++) {
+                        int from = r.nextInt(ACCOUNTS), to = (from + 1 + r.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+                        pending.add(ds.transfer(accounts[from], accounts[to], 1 + r.nextInt(3_000), TxIdGenerator.next()));
+                    }
+                    for (CompletableFuture<Boolean> f : pending) (f.join() ? moved : refused).incrementAndGet();
+                }));
+            }
+            // snapshots taken mid-traffic see each transfer whole or not at all
+            List<Long> snapshotTotals = new ArrayList<>();
+            threads.forEach(Thread::start);
+            while (threads.stream().anyMatch(Thread::isAlive)) {
+                try (BalanceSnapshot s = ds.snapshot()) {
+                    snapshotTotals.add(s.getTotalCents());
+                }
+            }
+            for (Thread t : threads) t.join();
+
+            long total = 0;
+            for (Account a : accounts) {
+                assertTrue(a.getBalanceCents() >= 0, a.getAccountId() + " overdrawn");
+                total += a.getBalanceCents();
+            }
+            assertEquals(ACCOUNTS * START, total);
+            assertTrue(moved.get() > 0 && refused.get() > 0, "both outcomes exercised: " + moved + "/" + refused);
+            for (long t : snapshotTotals) assertEquals(ACCOUNTS * START, t);
+            long ledger = 0;
+            for (Account a : accounts) {
+                for (TransactionRecord t : ds.getTransactionsForAccount(a.getAccountId())) {
+                    ledger += t.getType().equals("CREDIT") ? t.getAmountCents() : -t.getAmountCents();
+                }
+            }
+            assertEquals(0, ledger, "every DEBIT has its CREDIT");
+            assertEquals(2 * moved.get(), ds.getAccounts().stream().mapToLong(a -> ds.countTransactionsForAccount(a.getAccountId())).sum());
+
+            DataStore recovered = new DataStore(TestFiles.copy(dir.resolve("live"), dir.resolve("crash")).toString(), FsyncPolicy.osManaged());
+            try {
+                for (Account a : accounts) assertEquals(a.getBalanceCents(), recovered.getAccount(a.getAccountId()).getBalanceCents());
+            } finally {
+                recovered.close();
+            }
+        } finally {
+            ds.close();
+        }
+    }
+
+    // Transfers between shards are two journal records; a snapshot cut across all shards still
+    // never lands between the two legs, and every shard recovers to the live balances.
+    @Test
+    void crossShardTransfersConserveTheTotal() throws Exception {
+        ShardedDataStore ds = new ShardedDataStore(dir.resolve("live"), 3, FsyncPolicy.osManaged());
+        try {
+            Account[] accounts = new Account[ACCOUNTS];
+            for (int i = 0; i < ACCOUNTS; i++) {
+                accounts[i] = new Account("acct-" + i, "owner", START);
+                ds.addAccount(accounts[i]).join();
+            }
+            List<Thread> threads = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                threads.add(new Thread(() -> {
+                    ThreadLocalRandom r = ThreadLocalRandom.current();
+                    List<CompletableFuture<Boolean>> pending = new ArrayList<>();
+                    for (int i = 0; i < TRANSFERS_PER_THREAD; i++) {
+                        int from = r.nextInt(ACCOUNTS), to = (from + 1 + r.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+                        pending.add(ds.transfer(accounts[from], accounts[to], 1 + r.nextInt(3_000), TxIdGenerator.next()));
+                    }
+                    for (CompletableFuture<Boolean> f : pending) f.join();
+                }));
+            }
+            List<Long> snapshotTotals = new ArrayList<>();
+            threads.forEach(Thread::start);
+            while (threads.stream().anyMatch(Thread::isAlive)) {
+                try (BalanceSnapshot s = ds.snapshot()) {
+                    snapshotTotals.add(s.getTotalCents());
+                }
+            }
+            for (Thread t : threads) t.join();
+
+            assertTrue(snapshotTotals.size() > 10, "snapshots taken: " + snapshotTotals.size());
+            for (long t : snapshotTotals) assertEquals(ACCOUNTS * START, t);
+            assertEquals(ACCOUNTS * START, ds.getAccounts().stream().mapToLong(Account::getBalanceCents).sum());
+
+            ShardedDataStore recovered = new ShardedDataStore(TestFiles.copy(dir.resolve("live"), dir.resolve("crash")), 3, FsyncPolicy.osManaged());
+            try {
+                for (Account a : accounts) assertEquals(a.getBalanceCents(), recovered.getAccount(a.getAccountId()).getBalanceCents());
+            } finally {
+                recovered.close();
+            }
+        } finally {
+            ds.close();
+        }
+    }
+
+    @Test
+    void refusedTransferChangesNothing() throws Exception {
+        DataStore ds = new DataStore(dir.toString(), FsyncPolicy.osManaged());
+        try {
+            Account a = new Account("a", "owner", 500), b = new Account("b", "owner", 0);
+            ds.addAccount(a).join();
+            ds.addAccount(b).join();
+            assertFalse(ds.transfer(a, b, 501, TxIdGenerator.next()).join());
+            assertEquals(500, a.getBalanceCents());
+            assertEquals(0, b.getBalanceCents());
+            assertEquals(0, ds.countTransactionsForAccount("a"));
+            assertThrows(IllegalArgumentException.class, () -> ds.transfer(a, a, 1, TxIdGenerator.next()));
+        } finally {
+            ds.close();
+        }
+    }
+}
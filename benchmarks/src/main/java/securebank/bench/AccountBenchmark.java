@@ -0,0 +1,156 @@
+package securebank.bench;
+
+import org.openjdk.jmh.annotations.*;
+import securebank.Account;
+import securebank.BalanceSnapshot;
+import securebank.DataStore;
+import securebank.FsyncPolicy;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// DataStore deposits and withdrawals, i.e. Account's CAS balance updates plus their journal
+// records (os-managed fsync, each call waiting for its record as BankServer does), against the
+// BigDecimal Account they replaced (kept below as BigDecimalAccount, as it was: synchronized,
+// rescaling on every change, no journal). "contended" runs depositors and withdrawers against
+// one shared account; "uncontended" gives every thread its own, which is the floor the
+// contended numbers should be read against. With snapshot=true a BalanceSnapshot stays open
+// for the iteration, so every update also keeps the version it superseded. Run with -prof gc
+// for bytes allocated per operation (gc.alloc.rate.norm).
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AccountBenchmark {
+    private static final long START_CENTS = 1_000_000_000_000L;
+    private static final BigDecimal ONE_CENT = new BigDecimal("0.01");
+
+    static final class BigDecimalAccount {
+        private BigDecimal balance = BigDecimal.valueOf(START_CENTS, 2);
+
+        synchronized void deposit(BigDecimal amount) {
+            balance = balance.add(amount).setScale(2, RoundingMode.HALF_UP);
+        }
+
+        synchronized boolean withdraw(BigDecimal amount) {
+            if (balance.compareTo(amount) < 0) return false;
+            balance = balance.subtract(amount).setScale(2, RoundingMode.HALF_UP);
+            return true;
+        }
+    }
+
+    // a fresh store per iteration, so the journal and any retained versions do not grow across the run
+    @State(Scope.Benchmark)
+    public static class Store {
+        @Param({ "false", "true" })
+        public boolean snapshot;
+
+        final AtomicInteger ids = new AtomicInteger();
+        Path dir;
+        DataStore ds;
+        BalanceSnapshot open;
+
+        @Setup(Level.Iteration)
+        public void open() throws Exception {
+            dir = Files.createTempDirectory("bench-account-");
+            ds = new DataStore(dir.toString(), FsyncPolicy.osManaged());
+            if (snapshot) open = ds.snapshot();
+        }
+
+        @TearDown(Level.Iteration)
+        public void close() throws Exception {
+            if (open != null) open.close();
+            ds.close();
+            DataGenerator.deleteTree(dir);
+        }
+
+        Account add() {
+            Account a = new Account("bench-" + ids.incrementAndGet(), "bench", START_CENTS);
+            ds.addAccount(a).join();
+            return a;
+        }
+    }
+
+    @State(Scope.Group)
+    public static class Shared {
+        Account account;
+        final BigDecimalAccount bigDecimal = new BigDecimalAccount();
+
+        @Setup(Level.Iteration)
+        public void open(Store store) {
+            account = store.add();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Own {
+        Account account;
+        final BigDecimalAccount bigDecimal = new BigDecimalAccount();
+
+        @Setup(Level.Iteration)
+        public void open(Store store) {
+            account = store.add();
+        }
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(2)
+    public void deposit(Store store, Shared s) {
+        store.ds.deposit(s.account, 1).join();
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(2)
+    public boolean withdraw(Store store, Shared s) {
+        return store.ds.withdraw(s.account, 1).join();
+    }
+
+    @Benchmark
+    @Group("uncontended")
+    @GroupThreads(2)
+    public void ownDeposit(Store store, Own o) {
+        store.ds.deposit(o.account, 1).join();
+    }
+
+    @Benchmark
+    @Group("uncontended")
+    @GroupThreads(2)
+    public boolean ownWithdraw(Store store, Own o) {
+        return store.ds.withdraw(o.account, 1).join();
+    }
+
+    @Benchmark
+    @Group("bigDecimalContended")
+    @GroupThreads(2)
+    public void bigDecimalDeposit(Shared s) {
+        s.bigDecimal.deposit(ONE_CENT);
+    }
+
+    @Benchmark
+    @Group("bigDecimalContended")
+    @GroupThreads(2)
+    public boolean bigDecimalWithdraw(Shared s) {
+        return s.bigDecimal.withdraw(ONE_CENT);
+    }
+
+    @Benchmark
+    @Group("bigDecimalUncontended")
+    @GroupThreads(2)
+    public void bigDecimalOwnDeposit(Own o) {
+        o.bigDecimal.deposit(ONE_CENT);
+    }
+
+    @Benchmark
+    @Group("bigDecimalUncontended")
+    @GroupThreads(2)
+    public boolean bigDecimalOwnWithdraw(Own o) {
+        return o.bigDecimal.withdraw(ONE_CENT);
+    }
+}
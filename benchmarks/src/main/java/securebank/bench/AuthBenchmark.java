@@ -0,0 +1,67 @@
+package securebank.bench;
+
+import org.openjdk.jmh.annotations.*;
+import securebank.AuthService;
+import securebank.DataStore;
+import securebank.FsyncPolicy;
+import securebank.Securityutil;
+import securebank.User;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+// Logins per second at a given PBKDF2 iteration count, i.e. what raising bank.kdf.iterations
+// would cost: hash is the KDF alone, login is AuthService.login end to end through the hashing
+// pool for a user stored with that count, and concurrentLogins is the same from one caller per
+// core, which is what the pool is sized for. The forked JVM lifts the global KDF throttle,
+// which would otherwise turn most calls away before they hash.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = { "-Dbank.auth.kdfPerSecond=1000000", "-Dbank.auth.kdfBurst=1000000" })
+public class AuthBenchmark {
+    private static final String USER = "bench";
+
+    @Param({ "65536", "600000" })
+    public int iterations;
+
+    private Path dir;
+    private DataStore store;
+    private AuthService auth;
+    private String salt;
+    private final char[] password = DataGenerator.PASSWORD.toCharArray();
+
+    @Setup(Level.Trial)
+    public void open() throws Exception {
+        dir = Stores.create("text", 1, 1, 0);
+        store = new DataStore(dir.toString(), FsyncPolicy.osManaged());
+        auth = new AuthService(store);
+        salt = Securityutil.generateSaltBase64();
+        String hash = Securityutil.hashPasswordBase64(password, salt, Securityutil.ALGORITHM, iterations);
+        store.addUser(new User(USER, hash, salt, Securityutil.ALGORITHM, iterations)).join();
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws Exception {
+        store.close();
+        DataGenerator.deleteTree(dir);
+    }
+
+    @Benchmark
+    public String hash() throws Exception {
+        return Securityutil.hashPasswordBase64(password, salt, Securityutil.ALGORITHM, iterations);
+    }
+
+    @Benchmark
+    public boolean login() throws Exception {
+        return auth.login(USER, password);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public boolean concurrentLogins() throws Exception {
+        return auth.login(USER, password);
+    }
+}
@@ -0,0 +1,145 @@
+package securebank.bench;
+
+import securebank.Account;
+import securebank.Securityutil;
+import securebank.TransactionRecord;
+import securebank.User;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// Writes a synthetic text data directory (users.txt, accounts.txt, transactions.txt) that
+// DataStore opens like any other. Everything is derived from the seed, so the same arguments
+// give byte-identical files and benchmark runs compare like with like. The ledger is a mix of
+// deposits, withdrawals and transfers spread over one year in time order, withdrawals never
+// overdraw, and each account's balance is the sum of its records. Every user's password is
+// PASSWORD; the hash is computed once and shared, as a real KDF run per user would dominate.
+//
+//   java -cp benchmarks/target/benchmarks.jar securebank.bench.DataGenerator dir users accountsPerUser txPerAccount [seed]
+public class DataGenerator {
+    public static final String PASSWORD = "password";
+    public static final long DEFAULT_SEED = 42;
+    public static final long START_MILLIS = 1_672_531_200_000L; // 2023-01-01T00:00:00Z
+    public static final long SPAN_MILLIS = TimeUnit.DAYS.toMillis(365);
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 4) {
+            System.out.println("usage: DataGenerator dir users accountsPerUser txPerAccount [seed]");
+            return;
+        }
+        int users = Integer.parseInt(args[1]), accountsPerUser = Integer.parseInt(args[2]), txPerAccount = Integer.parseInt(args[3]);
+        long start = System.nanoTime();
+        long records = generate(Paths.get(args[0]), users, accountsPerUser, txPerAccount,
+                args.length > 4 ? Long.parseLong(args[4]) : DEFAULT_SEED);
+        System.out.printf("Wrote %d users, %d accounts and %d transactions to %s in %d ms.%n",
+                users, (long) users * accountsPerUser, records, args[0], (System.nanoTime() - start) / 1_000_000);
+    }
+
+    public static String username(int user) {
+        return "user" + user;
+    }
+
+    // Accounts look like the console's: owner-xxxxxxxx.
+    public static String accountId(int user, int account, long seed) {
+        long h = new SplittableRandom(seed ^ ((long) user << 20 ^ account)).nextLong();
+        return String.format("%s-%08x", username(user), (int) h);
+    }
+
+    // Fills dir, which must not hold a store yet, and returns the number of ledger records.
+    public static long generate(Path dir, int users, int accountsPerUser, int txPerAccount, long seed) throws Exception {
+        if (users < 1 || accountsPerUser < 1 || txPerAccount < 0) throw new IllegalArgumentException("sizes must be positive");
+        Files.createDirectories(dir);
+        if (Files.exists(dir.resolve("users.txt"))) throw new IOException(dir + " already holds a store");
+        int accounts = users * accountsPerUser;
+        String[] ids = new String[accounts];
+        for (int u = 0; u < users; u++) {
+            for (int k = 0; k < accountsPerUser; k++) ids[u * accountsPerUser + k] = accountId(u, k, seed);
+        }
+
+        SplittableRandom random = new SplittableRandom(seed);
+        byte[] saltBytes = new byte[16];
+        for (int i = 0; i < saltBytes.length; i++) saltBytes[i] = (byte) random.nextInt(256);
+        String salt = Base64.getEncoder().encodeToString(saltBytes);
+        String hash = Securityutil.hashPasswordBase64(PASSWORD.toCharArray(), salt);
+        try (BufferedWriter w = Files.newBufferedWriter(dir.resolve("users.txt"), StandardCharsets.UTF_8)) {
+            for (int u = 0; u < users; u++) {
+                w.write(new User(username(u), hash, salt, Securityutil.ALGORITHM, Securityutil.ITERATIONS).toStorageString());
+                w.newLine();
+            }
+        }
+
+        // about txPerAccount records per account: 50% deposits, 30% withdrawals, 20% transfer legs
+        long[] balances = new long[accounts];
+        long target = (long) accounts * txPerAccount;
+        long records = 0, txSeq = 0;
+        try (BufferedWriter w = Files.newBufferedWriter(dir.resolve("transactions.txt"), StandardCharsets.UTF_8)) {
+            while (records < target) {
+                long millis = START_MILLIS + SPAN_MILLIS * records / Math.max(1, target);
+                int a = random.nextInt(accounts);
+                long cents = 100 + random.nextInt(50_000);
+                int roll = random.nextInt(10);
+                if (roll < 5 || balances[a] < cents) {
+                    balances[a] += cents;
+                    write(w, new TransactionRecord(txId(txSeq++), ids[a], "DEPOSIT", cents, millis));
+                    records++;
+                } else if (roll < 8 || accounts == 1) {
+                    balances[a] -= cents;
+                    write(w, new TransactionRecord(txId(txSeq++), ids[a], "WITHDRAW", cents, millis));
+                    records++;
+                } else {
+                    int b = random.nextInt(accounts - 1);
+                    if (b >= a) b++;
+                    String txId = txId(txSeq++);
+                    balances[a] -= cents;
+                    balances[b] += cents;
+                    write(w, new TransactionRecord(txId, ids[a], "DEBIT", cents, millis));
+                    write(w, new TransactionRecord(txId, ids[b], "CREDIT", cents, millis));
+                    records += 2;
+                }
+            }
+        }
+
+        try (BufferedWriter w = Files.newBufferedWriter(dir.resolve("accounts.txt"), StandardCharsets.UTF_8)) {
+            for (int i = 0; i < accounts; i++) {
+                w.write(new Account(ids[i], username(i / accountsPerUser), balances[i]).toStorageString());
+                w.newLine();
+            }
+        }
+        return records;
+    }
+
+    private static void write(BufferedWriter w, TransactionRecord t) throws IOException {
+        w.write(t.toStorageString());
+        w.newLine();
+    }
+
+    // Same shape as TxIdGenerator's ids: a two-letter prefix and 13 base-36 digits.
+    private static String txId(long n) {
+        String digits = Long.toString(n, 36);
+        StringBuilder b = new StringBuilder(15).append("GX");
+        for (int i = digits.length(); i < 13; i++) b.append('0');
+        return b.append(digits).toString();
+    }
+
+    // Benchmarks build their stores in scratch directories and remove them afterwards.
+    public static void deleteTree(Path root) throws IOException {
+        if (root == null || !Files.exists(root)) return;
+        List<Path> paths = new ArrayList<>();
+        try (Stream<Path> s = Files.walk(root)) {
+            s.forEach(paths::add);
+        }
+        Collections.reverse(paths); // children before their directory
+        for (Path p : paths) Files.delete(p);
+    }
+}
@@ -0,0 +1,94 @@
+package securebank.bench;
+
+import org.openjdk.jmh.annotations.*;
+import securebank.Account;
+import securebank.DataStore;
+import securebank.DedupeCache;
+import securebank.FsyncPolicy;
+import securebank.TransactionRecord;
+import securebank.TxIdGenerator;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+// What idempotency keys add to a deposit. txId, claimNewKey and retryKnownKey are the steps on
+// their own, the cache full at its default 1M keys so every claim also evicts one; deposit and
+// depositWithKey are the whole store call, as BankServer makes it without and with the header.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class DedupeBenchmark {
+    private static final int MAX_KEYS = 1_000_000;
+
+    private DedupeCache cache;
+    private long nextKey;
+    private Path dir;
+    private DataStore store;
+    private Account account;
+
+    @Setup(Level.Trial)
+    public void fill() {
+        cache = new DedupeCache(TimeUnit.DAYS.toMillis(1), MAX_KEYS);
+        long now = System.currentTimeMillis();
+        for (nextKey = 0; nextKey < MAX_KEYS; nextKey++) claim(nextKey, now);
+    }
+
+    // a fresh store per iteration, so the in-memory ledger does not grow across the run
+    @Setup(Level.Iteration)
+    public void open() throws Exception {
+        dir = Files.createTempDirectory("bench-dedupe-");
+        store = new DataStore(dir.toString(), FsyncPolicy.osManaged());
+        account = new Account("bench-1", "bench", 0);
+        store.addAccount(account).join();
+    }
+
+    @TearDown(Level.Iteration)
+    public void close() throws Exception {
+        store.close();
+        DataGenerator.deleteTree(dir);
+    }
+
+    private static String key(long n) {
+        return "key-" + n;
+    }
+
+    @Benchmark
+    public String txId() {
+        return TxIdGenerator.next();
+    }
+
+    private DedupeCache.Entry claim(long n, long now) {
+        DedupeCache.Entry mine = new DedupeCache.Entry(key(n), "DEPOSIT|1", now);
+        DedupeCache.Entry prior = cache.putIfAbsent(mine, now);
+        if (prior == null) cache.complete(mine, TxIdGenerator.next());
+        return prior;
+    }
+
+    @Benchmark
+    public DedupeCache.Entry claimNewKey() {
+        return claim(nextKey++, System.currentTimeMillis());
+    }
+
+    // a client retry: the key is still cached and nothing is applied
+    @Benchmark
+    public DedupeCache.Entry retryKnownKey() {
+        return claim(nextKey - 1, System.currentTimeMillis());
+    }
+
+    @Benchmark
+    public void deposit() {
+        String txId = TxIdGenerator.next();
+        CompletableFuture.allOf(store.deposit(account, 1),
+                store.addTransaction(TransactionRecord.create(txId, account.getAccountId(), "DEPOSIT", 1))).join();
+    }
+
+    @Benchmark
+    public String depositWithKey() {
+        return store.deposit(account, 1, key(nextKey++)).join();
+    }
+}
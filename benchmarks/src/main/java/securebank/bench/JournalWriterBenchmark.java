@@ -0,0 +1,45 @@
+package securebank.bench;
+
+import org.openjdk.jmh.annotations.*;
+import securebank.FsyncPolicy;
+import securebank.JournalWriter;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+// The line append under every store write: one ledger-sized line through a JournalWriter,
+// waiting for it to be durable. Comparing -t 1 with -t 8 under "record" shows how many
+// appends group commit folds into one force().
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JournalWriterBenchmark {
+    private static final String LINE = "TX0lq8z3e1c0a7k|user42-1f3a9b2c|DEPOSIT|125.00|2024-03-01T12:00:00Z";
+
+    @Param({ "os", "10ms", "record" })
+    public String fsync;
+
+    private Path dir;
+    private JournalWriter writer;
+
+    @Setup(Level.Iteration)
+    public void open() throws Exception {
+        dir = Files.createTempDirectory("bench-journal-");
+        writer = new JournalWriter(dir.resolve("append.log"), FsyncPolicy.parse(fsync));
+    }
+
+    @TearDown(Level.Iteration)
+    public void close() throws Exception {
+        writer.close();
+        DataGenerator.deleteTree(dir);
+    }
+
+    @Benchmark
+    public void appendLine() {
+        writer.append(LINE).join();
+    }
+}
@@ -0,0 +1,54 @@
+package securebank.bench;
+
+import org.openjdk.jmh.annotations.*;
+import securebank.Account;
+import securebank.DataStore;
+import securebank.FsyncPolicy;
+import securebank.TransactionRecord;
+import securebank.TxIdGenerator;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// DataStore.addTransaction end to end: index, ledger write and statement fold, each call
+// waiting until its record is durable under the fsync policy. Run with -t N to see group
+// commit share one write among concurrent callers. The store is rebuilt every iteration
+// so the ledger does not pile up in heap over the run.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LedgerBenchmark {
+    @Param({ "text", "binary", "lazy" })
+    public String storage;
+
+    @Param({ "os", "record" })
+    public String fsync;
+
+    private Path dir;
+    private DataStore store;
+    private String[] accountIds;
+    private final AtomicLong next = new AtomicLong();
+
+    @Setup(Level.Iteration)
+    public void open() throws Exception {
+        dir = Stores.create(storage, 100, 10, 0);
+        store = new DataStore(dir.toString(), FsyncPolicy.parse(fsync));
+        accountIds = store.getAccounts().stream().map(Account::getAccountId).sorted().toArray(String[]::new);
+    }
+
+    @TearDown(Level.Iteration)
+    public void close() throws Exception {
+        store.close();
+        DataGenerator.deleteTree(dir);
+    }
+
+    @Benchmark
+    public void addTransaction() {
+        String accountId = accountIds[(int) (next.getAndIncrement() % accountIds.length)];
+        store.addTransaction(TransactionRecord.create(TxIdGenerator.next(), accountId, "DEPOSIT", 100)).join();
+    }
+}
@@ -0,0 +1,53 @@
+package securebank.bench;
+
+import org.openjdk.jmh.annotations.*;
+import securebank.DataStore;
+import securebank.FsyncPolicy;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+// Cold start: opening a store runs loadAll (users, accounts, journals, ledger, statements)
+// and the startup snapshot. Each measurement is one open of the same directory; getLoadReport
+// on the opened store breaks the time down per file.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class LoadBenchmark {
+    @Param({ "10000", "100000" })
+    public int accounts;
+
+    @Param({ "20" })
+    public int txPerAccount;
+
+    @Param({ "text", "binary", "lazy" })
+    public String storage;
+
+    private Path dir;
+    private DataStore store;
+
+    @Setup(Level.Trial)
+    public void create() throws Exception {
+        dir = Stores.create(storage, accounts / 2, 2, txPerAccount);
+    }
+
+    @TearDown(Level.Trial)
+    public void delete() throws Exception {
+        DataGenerator.deleteTree(dir);
+    }
+
+    @TearDown(Level.Iteration)
+    public void close() throws Exception {
+        if (store != null) store.close();
+        store = null;
+    }
+
+    @Benchmark
+    public DataStore loadAll() throws Exception {
+        store = new DataStore(dir.toString(), FsyncPolicy.osManaged());
+        return store;
+    }
+}
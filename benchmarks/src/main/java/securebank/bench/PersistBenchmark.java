@@ -0,0 +1,56 @@
+package securebank.bench;
+
+import org.openjdk.jmh.annotations.*;
+import securebank.Account;
+import securebank.DataStore;
+import securebank.FsyncPolicy;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+// persistAccounts, the balance snapshot: capture under the write lock, write the snapshot
+// file and drop old journal generations. A few deposits before each call give it a journal
+// generation to retire, as under live traffic.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class PersistBenchmark {
+    @Param({ "10000", "100000", "1000000" })
+    public int accounts;
+
+    @Param({ "text", "binary" })
+    public String storage;
+
+    private Path dir;
+    private DataStore store;
+    private List<Account> sample;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void open() throws Exception {
+        dir = Stores.create(storage, accounts / 10, 10, 0);
+        store = new DataStore(dir.toString(), FsyncPolicy.osManaged());
+        sample = store.getAccounts().stream().limit(64).collect(Collectors.toList());
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws Exception {
+        store.close();
+        DataGenerator.deleteTree(dir);
+    }
+
+    @Setup(Level.Invocation)
+    public void touch() {
+        for (int i = 0; i < 8; i++) store.deposit(sample.get(next++ % sample.size()), 1).join();
+    }
+
+    @Benchmark
+    public void persistAccounts() throws Exception {
+        store.persistAccounts();
+    }
+}
@@ -0,0 +1,84 @@
+package securebank.bench;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import securebank.Account;
+import securebank.DataStore;
+import securebank.FsyncPolicy;
+
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Read paths at growing ledger sizes: 2,000 accounts with 10 to 1,000 records each, so the
+// ledger holds 20k to 2M records. A random account or user per call.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class QueryBenchmark {
+    private static final int USERS = 500;
+    private static final int ACCOUNTS_PER_USER = 4;
+    private static final int PAGE = 20;
+    private static final int MAX_PAGE = 500;
+
+    @Param({ "10", "100", "1000" })
+    public int txPerAccount;
+
+    @Param({ "text", "lazy" })
+    public String storage;
+
+    private Path dir;
+    private DataStore store;
+    private String[] accountIds;
+
+    @Setup(Level.Trial)
+    public void open() throws Exception {
+        dir = Stores.create(storage, USERS, ACCOUNTS_PER_USER, txPerAccount);
+        store = new DataStore(dir.toString(), FsyncPolicy.osManaged());
+        accountIds = store.getAccounts().stream().map(Account::getAccountId).sorted().toArray(String[]::new);
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws Exception {
+        store.close();
+        DataGenerator.deleteTree(dir);
+    }
+
+    private String anyAccount() {
+        return accountIds[ThreadLocalRandom.current().nextInt(accountIds.length)];
+    }
+
+    // whole history, newest first
+    @Benchmark
+    public void transactionsForAccount(Blackhole bh) {
+        bh.consume(store.getTransactionsForAccount(anyAccount()));
+    }
+
+    // the first page, as the console and the HTTP API ask for it
+    @Benchmark
+    public void transactionsPage(Blackhole bh) {
+        bh.consume(store.getTransactionsForAccount(anyAccount(), 0, PAGE));
+    }
+
+    // one week of an account's history from a random point of the generated year; the lazy
+    // ledger skips archived segments outside the week on their headers
+    @Benchmark
+    public void transactionsBetween(Blackhole bh) {
+        long from = DataGenerator.START_MILLIS + ThreadLocalRandom.current().nextLong(DataGenerator.SPAN_MILLIS);
+        bh.consume(store.getTransactionsBetween(anyAccount(), from, from + TimeUnit.DAYS.toMillis(7), 0, MAX_PAGE));
+    }
+
+    // balance at a random moment of the generated year: statement checkpoints plus one day's records
+    @Benchmark
+    public long balanceAsOf() {
+        return store.getBalanceAsOf(anyAccount(), DataGenerator.START_MILLIS + ThreadLocalRandom.current().nextLong(DataGenerator.SPAN_MILLIS));
+    }
+
+    @Benchmark
+    public void accountsForUser(Blackhole bh) {
+        bh.consume(store.getAccountsForUser(DataGenerator.username(ThreadLocalRandom.current().nextInt(USERS))));
+    }
+}
@@ -0,0 +1,74 @@
+package securebank.bench;
+
+import org.openjdk.jmh.annotations.*;
+import securebank.Account;
+import securebank.FsyncPolicy;
+import securebank.ShardedDataStore;
+import securebank.TransactionRecord;
+import securebank.TxIdGenerator;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Write throughput of a ShardedDataStore by shard count, 8 threads on random accounts and each
+// call waiting until durable, as BankServer does. Deposits stay on one shard; with N shards
+// about (N-1)/N of the transfers cross shards and take two shard locks and two journals.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class ShardBenchmark {
+    private static final int ACCOUNTS = 10_000;
+
+    @Param({ "1", "2", "4" })
+    public int shards;
+
+    @Param({ "os", "10ms" })
+    public String fsync;
+
+    private Path dir;
+    private ShardedDataStore store;
+    private Account[] accounts;
+
+    // a fresh store per iteration, so the in-memory ledgers do not grow across the run
+    @Setup(Level.Iteration)
+    public void open() throws Exception {
+        dir = Files.createTempDirectory("bench-shards-");
+        store = new ShardedDataStore(dir, shards, FsyncPolicy.parse(fsync));
+        accounts = new Account[ACCOUNTS];
+        List<CompletableFuture<Void>> pending = new ArrayList<>();
+        for (int i = 0; i < ACCOUNTS; i++) {
+            accounts[i] = new Account("bench-" + i, "bench", 1_000_000);
+            pending.add(store.addAccount(accounts[i]));
+        }
+        for (CompletableFuture<Void> f : pending) f.join();
+    }
+
+    @TearDown(Level.Iteration)
+    public void close() throws Exception {
+        store.close();
+        DataGenerator.deleteTree(dir);
+    }
+
+    @Benchmark
+    public void deposit() {
+        Account a = accounts[ThreadLocalRandom.current().nextInt(ACCOUNTS)];
+        CompletableFuture.allOf(store.deposit(a, 1),
+                store.addTransaction(TransactionRecord.create(TxIdGenerator.next(), a.getAccountId(), "DEPOSIT", 1))).join();
+    }
+
+    @Benchmark
+    public boolean transfer() {
+        ThreadLocalRandom r = ThreadLocalRandom.current();
+        int from = r.nextInt(ACCOUNTS), to = (from + 1 + r.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+        return store.transfer(accounts[from], accounts[to], 1, TxIdGenerator.next()).join();
+    }
+}
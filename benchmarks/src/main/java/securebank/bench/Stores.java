@@ -0,0 +1,87 @@
+package securebank.bench;
+
+import securebank.Account;
+import securebank.DataStore;
+import securebank.FsyncPolicy;
+import securebank.LedgerConverter;
+import securebank.TransactionRecord;
+import securebank.User;
+
+import java.io.BufferedReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+// Scratch stores for the benchmarks: generated as text, then converted to the storage being
+// measured. "text" is the default layout, "binary" is what LedgerConverter produces and
+// "lazy" keeps the ledger on disk in a SegmentedLedger, with every sealed segment but the
+// newest archived (closing the store waits for the archiver).
+final class Stores {
+    private static final int BATCH = 8192;
+
+    private Stores() {}
+
+    static Path create(String storage, int users, int accountsPerUser, int txPerAccount) throws Exception {
+        Path dir = Files.createTempDirectory("bench-" + storage + "-");
+        DataGenerator.generate(dir, users, accountsPerUser, txPerAccount, DataGenerator.DEFAULT_SEED);
+        switch (storage) {
+            case "text":
+                break;
+            case "binary":
+                LedgerConverter.main(new String[] { dir.toString() });
+                break;
+            case "lazy":
+                dir = toLazy(dir);
+                break;
+            default:
+                throw new IllegalArgumentException("storage must be text, binary or lazy: " + storage);
+        }
+        // the first open writes a snapshot and statements.txt, so every measured open sees a steady-state directory
+        new DataStore(dir.toString(), FsyncPolicy.osManaged()).close();
+        return dir;
+    }
+
+    // Copies a text store into a fresh lazy-ledger store.
+    private static Path toLazy(Path textDir) throws Exception {
+        Path lazyDir = Files.createTempDirectory("bench-lazy-");
+        DataStore source = new DataStore(textDir.toString(), FsyncPolicy.osManaged());
+        String previous = System.setProperty("bank.ledger", "lazy");
+        try {
+            DataStore target = new DataStore(lazyDir.toString(), FsyncPolicy.osManaged());
+            try {
+                List<CompletableFuture<?>> pending = new ArrayList<>();
+                for (User u : source.getUsers()) pending.add(target.addUser(u));
+                for (Account a : source.getAccounts()) {
+                    pending.add(target.addAccount(new Account(a.getAccountId(), a.getOwnerUsername(), a.getBalanceCents())));
+                }
+                joinAll(pending);
+                // in file order, so segments interleave accounts the way live traffic does
+                try (BufferedReader r = Files.newBufferedReader(textDir.resolve("transactions.txt"), StandardCharsets.UTF_8)) {
+                    String line;
+                    while ((line = r.readLine()) != null) {
+                        TransactionRecord t = TransactionRecord.fromStorageString(line);
+                        if (t != null) pending.add(target.addTransaction(t));
+                        if (pending.size() >= BATCH) joinAll(pending);
+                    }
+                }
+                joinAll(pending);
+            } finally {
+                target.close();
+            }
+        } finally {
+            if (previous == null) System.clearProperty("bank.ledger");
+            else System.setProperty("bank.ledger", previous);
+            source.close();
+        }
+        DataGenerator.deleteTree(textDir);
+        return lazyDir;
+    }
+
+    private static void joinAll(List<CompletableFuture<?>> pending) {
+        for (CompletableFuture<?> f : pending) f.join();
+        pending.clear();
+    }
+}